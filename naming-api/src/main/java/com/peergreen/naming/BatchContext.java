@@ -0,0 +1,37 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming;
+
+import java.util.Map;
+
+import javax.naming.NamingException;
+
+/**
+ * Context allowing to bind many objects in a single operation.
+ * @author Florent Benoit
+ */
+public interface BatchContext {
+
+    /**
+     * Binds all the given objects. Missing intermediate contexts are created.
+     * A name which can't be bound doesn't prevent the other names to be bound.
+     * @param bindings the objects to bind, by name
+     * @return the exceptions of the names that have not been bound (empty if all the names have been bound)
+     * @throws NamingException if a naming exception is encountered
+     */
+    Map<String, NamingException> bindAll(Map<String, ?> bindings) throws NamingException;
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming;
+
+import java.util.List;
+
+import javax.naming.Binding;
+
+/**
+ * Page of bindings returned by a {@link PagedContext}.
+ * @author Florent Benoit
+ */
+public interface BindingsPage {
+
+    /**
+     * @return the bindings of this page, ordered by name
+     */
+    List<Binding> getBindings();
+
+    /**
+     * Gets the cursor to use for listing the next page. It has to be handled
+     * as an opaque value.
+     * @return the cursor of the next page or null if this page is the last one
+     */
+    String getNextCursor();
+
+}
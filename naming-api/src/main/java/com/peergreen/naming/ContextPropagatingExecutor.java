@@ -0,0 +1,65 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executor running the tasks with the java: context that was active when
+ * they have been submitted, whatever the thread running them. Asynchronous
+ * pipelines keep their context by using it as the executor of their stages.
+ * @author Florent Benoit
+ */
+public class ContextPropagatingExecutor implements Executor {
+
+    /**
+     * Manager providing the active context.
+     */
+    private final JavaNamingManager javaNamingManager;
+
+    /**
+     * Executor running the tasks.
+     */
+    private final Executor executor;
+
+    /**
+     * Constructor.
+     * @param javaNamingManager the manager providing the active context
+     * @param executor the executor running the tasks
+     */
+    public ContextPropagatingExecutor(final JavaNamingManager javaNamingManager, final Executor executor) {
+        this.javaNamingManager = javaNamingManager;
+        this.executor = executor;
+    }
+
+    /**
+     * Runs the given task with the active context.
+     * @param command the task
+     */
+    @Override
+    public void execute(final Runnable command) {
+        executor.execute(ContextPropagatingTask.wrap(javaNamingManager, command));
+    }
+
+    /**
+     * @return the manager providing the active context
+     */
+    protected JavaNamingManager getJavaNamingManager() {
+        return javaNamingManager;
+    }
+
+}
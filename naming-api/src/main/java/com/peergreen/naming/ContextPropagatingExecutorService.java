@@ -0,0 +1,207 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executor service running the tasks with the java: context that was active
+ * when they have been submitted, whatever the thread running them.
+ * @author Florent Benoit
+ */
+public class ContextPropagatingExecutorService extends ContextPropagatingExecutor implements ExecutorService {
+
+    /**
+     * Executor service running the tasks.
+     */
+    private final ExecutorService executorService;
+
+    /**
+     * Constructor.
+     * @param javaNamingManager the manager providing the active context
+     * @param executorService the executor service running the tasks
+     */
+    public ContextPropagatingExecutorService(final JavaNamingManager javaNamingManager,
+            final ExecutorService executorService) {
+        super(javaNamingManager, executorService);
+        this.executorService = executorService;
+    }
+
+    /**
+     * Captures the active context for the given tasks.
+     * @param tasks the tasks
+     * @param <T> the type of the results
+     * @return the tasks running with the active context
+     */
+    private <T> List<Callable<T>> wrap(final Collection<? extends Callable<T>> tasks) {
+        List<Callable<T>> wrapped = new ArrayList<Callable<T>>(tasks.size());
+        for (Callable<T> task : tasks) {
+            wrapped.add(ContextPropagatingTask.wrap(getJavaNamingManager(), task));
+        }
+        return wrapped;
+    }
+
+    /**
+     * Shuts down the executor service.
+     */
+    @Override
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    /**
+     * Stops the executor service.
+     * @return the tasks that were waiting, as they have been submitted
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> waiting = executorService.shutdownNow();
+        List<Runnable> tasks = new ArrayList<Runnable>(waiting.size());
+        for (Runnable task : waiting) {
+            tasks.add(ContextPropagatingTask.unwrap(task));
+        }
+        return tasks;
+    }
+
+    /**
+     * @return true if the executor service has been shut down
+     */
+    @Override
+    public boolean isShutdown() {
+        return executorService.isShutdown();
+    }
+
+    /**
+     * @return true if all the tasks are completed after a shut down
+     */
+    @Override
+    public boolean isTerminated() {
+        return executorService.isTerminated();
+    }
+
+    /**
+     * Waits for the completion of the tasks after a shut down.
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if the executor service has terminated
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return executorService.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Submits a task running with the active context.
+     * @param task the task
+     * @param <T> the type of the result
+     * @return the future result of the task
+     */
+    @Override
+    public <T> Future<T> submit(final Callable<T> task) {
+        return executorService.submit(ContextPropagatingTask.wrap(getJavaNamingManager(), task));
+    }
+
+    /**
+     * Submits a task running with the active context.
+     * @param task the task
+     * @param result the result to return
+     * @param <T> the type of the result
+     * @return the future result of the task
+     */
+    @Override
+    public <T> Future<T> submit(final Runnable task, final T result) {
+        return executorService.submit(ContextPropagatingTask.wrap(getJavaNamingManager(), task), result);
+    }
+
+    /**
+     * Submits a task running with the active context.
+     * @param task the task
+     * @return the future completion of the task
+     */
+    @Override
+    public Future<?> submit(final Runnable task) {
+        return executorService.submit(ContextPropagatingTask.wrap(getJavaNamingManager(), task));
+    }
+
+    /**
+     * Runs the given tasks with the active context.
+     * @param tasks the tasks
+     * @param <T> the type of the results
+     * @return the future results of the tasks
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Override
+    public <T> List<Future<T>> invokeAll(final Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        return executorService.invokeAll(wrap(tasks));
+    }
+
+    /**
+     * Runs the given tasks with the active context.
+     * @param tasks the tasks
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @param <T> the type of the results
+     * @return the future results of the tasks
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Override
+    public <T> List<Future<T>> invokeAll(final Collection<? extends Callable<T>> tasks, final long timeout,
+            final TimeUnit unit) throws InterruptedException {
+        return executorService.invokeAll(wrap(tasks), timeout, unit);
+    }
+
+    /**
+     * Runs the given tasks with the active context and returns the result of one of them.
+     * @param tasks the tasks
+     * @param <T> the type of the results
+     * @return the result of a successful task
+     * @throws InterruptedException if interrupted while waiting
+     * @throws ExecutionException if no task has succeeded
+     */
+    @Override
+    public <T> T invokeAny(final Collection<? extends Callable<T>> tasks) throws InterruptedException,
+            ExecutionException {
+        return executorService.invokeAny(wrap(tasks));
+    }
+
+    /**
+     * Runs the given tasks with the active context and returns the result of one of them.
+     * @param tasks the tasks
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @param <T> the type of the results
+     * @return the result of a successful task
+     * @throws InterruptedException if interrupted while waiting
+     * @throws ExecutionException if no task has succeeded
+     * @throws TimeoutException if the timeout has elapsed
+     */
+    @Override
+    public <T> T invokeAny(final Collection<? extends Callable<T>> tasks, final long timeout, final TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return executorService.invokeAny(wrap(tasks), timeout, unit);
+    }
+
+}
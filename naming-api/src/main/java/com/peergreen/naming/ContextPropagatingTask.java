@@ -0,0 +1,168 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming;
+
+import java.util.concurrent.Callable;
+
+import javax.naming.Context;
+
+/**
+ * Task running with the java: context that was active when it has been
+ * submitted. The task and the captured context are held by this single
+ * object, a {@link Runnable} or a {@link Callable} like the submitted task.
+ * @param <T> the type of the submitted task
+ * @author Florent Benoit
+ */
+abstract class ContextPropagatingTask<T> {
+
+    /**
+     * Manager used to bind the context.
+     */
+    private final JavaNamingManager javaNamingManager;
+
+    /**
+     * The captured context (null if no context was active).
+     */
+    private final Context context;
+
+    /**
+     * The submitted task.
+     */
+    private final T task;
+
+    /**
+     * Constructor capturing the active context.
+     * @param javaNamingManager the manager providing the context
+     * @param task the submitted task
+     */
+    private ContextPropagatingTask(final JavaNamingManager javaNamingManager, final T task) {
+        this.javaNamingManager = javaNamingManager;
+        this.context = javaNamingManager.getActiveContext();
+        this.task = task;
+    }
+
+    /**
+     * Captures the active context for the given task.
+     * @param javaNamingManager the manager providing the context
+     * @param runnable the task
+     * @return the task running with the captured context
+     */
+    static Runnable wrap(final JavaNamingManager javaNamingManager, final Runnable runnable) {
+        return new PropagatingRunnable(javaNamingManager, runnable);
+    }
+
+    /**
+     * Captures the active context for the given task.
+     * @param javaNamingManager the manager providing the context
+     * @param callable the task
+     * @param <V> the type of the result
+     * @return the task running with the captured context
+     */
+    static <V> Callable<V> wrap(final JavaNamingManager javaNamingManager, final Callable<V> callable) {
+        return new PropagatingCallable<V>(javaNamingManager, callable);
+    }
+
+    /**
+     * Gives the submitted task of a task that has not been run.
+     * @param runnable the task given to the executor
+     * @return the submitted task, or the given one if it doesn't propagate a context
+     */
+    static Runnable unwrap(final Runnable runnable) {
+        if (runnable instanceof PropagatingRunnable) {
+            return ((PropagatingRunnable) runnable).getTask();
+        }
+        return runnable;
+    }
+
+    /**
+     * Makes the captured context the active one.
+     * @return the scope to close once the task has run
+     */
+    protected ContextScope openScope() {
+        return javaNamingManager.openScope(context);
+    }
+
+    /**
+     * @return the submitted task
+     */
+    protected T getTask() {
+        return task;
+    }
+
+    /**
+     * Runnable task running with the captured context.
+     * @author Florent Benoit
+     */
+    private static final class PropagatingRunnable extends ContextPropagatingTask<Runnable> implements Runnable {
+
+        /**
+         * Constructor capturing the active context.
+         * @param javaNamingManager the manager providing the context
+         * @param runnable the submitted task
+         */
+        private PropagatingRunnable(final JavaNamingManager javaNamingManager, final Runnable runnable) {
+            super(javaNamingManager, runnable);
+        }
+
+        /**
+         * Runs the task with the captured context.
+         */
+        @Override
+        public void run() {
+            ContextScope scope = openScope();
+            try {
+                getTask().run();
+            } finally {
+                scope.close();
+            }
+        }
+    }
+
+    /**
+     * Callable task running with the captured context.
+     * @param <V> the type of the result
+     * @author Florent Benoit
+     */
+    private static final class PropagatingCallable<V> extends ContextPropagatingTask<Callable<V>>
+            implements Callable<V> {
+
+        /**
+         * Constructor capturing the active context.
+         * @param javaNamingManager the manager providing the context
+         * @param callable the submitted task
+         */
+        private PropagatingCallable(final JavaNamingManager javaNamingManager, final Callable<V> callable) {
+            super(javaNamingManager, callable);
+        }
+
+        /**
+         * Calls the task with the captured context.
+         * @return the result of the task
+         * @throws Exception the exception thrown by the task
+         */
+        @Override
+        public V call() throws Exception {
+            ContextScope scope = openScope();
+            try {
+                return getTask().call();
+            } finally {
+                scope.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming;
+
+/**
+ * Propagation of the contexts bound on a thread to the threads it creates.
+ * @author Florent Benoit
+ */
+public enum ContextPropagation {
+
+    /**
+     * The threads inherit the contexts bound on the thread creating them.
+     * Each created thread copies the current scope.
+     */
+    INHERIT,
+
+    /**
+     * Nothing is inherited: a created thread has no context until one is
+     * bound on it, for example by a propagating executor. Creating a thread
+     * costs nothing, which suits workloads using a thread per request.
+     */
+    EXPLICIT;
+
+    /**
+     * System property used to select the propagation at startup (inherit or explicit).
+     */
+    public static final String PROPERTY = "com.peergreen.naming.propagation";
+
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming;
+
+import javax.naming.Context;
+
+/**
+ * Context bound on a thread until the scope is closed. Scopes can be nested:
+ * closing a scope restores the context that was bound when it was opened.
+ * @author Florent Benoit
+ */
+public interface ContextScope extends AutoCloseable {
+
+    /**
+     * @return the context bound by this scope
+     */
+    Context getContext();
+
+    /**
+     * Closes this scope (and the scopes opened after it and not yet closed).
+     */
+    @Override
+    void close();
+
+}
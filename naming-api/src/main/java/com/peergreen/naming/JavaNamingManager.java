@@ -16,6 +16,7 @@
 package com.peergreen.naming;
 
 import javax.naming.Context;
+import javax.naming.NamingException;
 
 /**
  * Manages the java: context
@@ -35,6 +36,27 @@ public interface JavaNamingManager {
      */
     void unbindThreadContext();
 
+    /**
+     * Bind the given context on the current thread until the returned scope
+     * is closed. Scopes can be nested at any depth.
+     * @param javaContext the context to set
+     * @return the scope to close for restoring the previous context
+     */
+    ContextScope openScope(Context javaContext);
+
+    /**
+     * @return the propagation of the thread contexts to the created threads
+     */
+    ContextPropagation getContextPropagation();
+
+    /**
+     * Selects the propagation of the thread contexts to the created threads.
+     * It should be selected before any context is bound on a thread: the
+     * contexts bound with the other propagation are no longer seen.
+     * @param contextPropagation the propagation to use
+     */
+    void setContextPropagation(ContextPropagation contextPropagation);
+
     /**
      * Bind the given context for the given classloader
      * @param classLoader the classloader to use
@@ -54,4 +76,29 @@ public interface JavaNamingManager {
      */
     Context getContext();
 
+    /**
+     * Gets the context bound on the current thread or for its context
+     * classloader (or one of its ancestors).
+     * @return the context or null if there is none, while {@link #getContext()}
+     * returns an empty context
+     */
+    Context getActiveContext();
+
+    /**
+     * Compiles the given java: name into a handle. Each lookup of the handle
+     * uses the current context.
+     * @param name the name to compile (like java:comp/env/myName)
+     * @return the handle of this name
+     * @throws NamingException if the name is invalid
+     */
+    LookupHandle compile(String name) throws NamingException;
+
+    /**
+     * Pins the current version of the naming contexts for the current
+     * thread, for example during a request. The lookups of this thread see a
+     * consistent view of the bindings until the snapshot is closed.
+     * @return the snapshot to close once the request is done
+     */
+    NamingSnapshot pinSnapshot();
+
 }
@@ -0,0 +1,41 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming;
+
+import javax.naming.NamingException;
+
+/**
+ * Name compiled once to be looked up many times. The path leading to the
+ * bound object is kept and it is only resolved again when the structure of
+ * the contexts has changed.
+ * @author Florent Benoit
+ */
+public interface LookupHandle {
+
+    /**
+     * @return the compiled name
+     */
+    String getName();
+
+    /**
+     * Retrieves the object bound to the compiled name.
+     * @return the object bound to the name
+     * @throws NamingException if a naming exception is encountered
+     */
+    Object lookup() throws NamingException;
+
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming;
+
+/**
+ * Version of the naming contexts pinned by a thread. While it is open, the
+ * lookups done by this thread see the bindings as they were when the
+ * snapshot has been taken, even if they are rebound in the meantime.
+ * @author Florent Benoit
+ */
+public interface NamingSnapshot extends AutoCloseable {
+
+    /**
+     * @return the pinned version
+     */
+    long getVersion();
+
+    /**
+     * Releases this snapshot. The lookups of the thread use the previous
+     * snapshot (if any) or the current bindings again.
+     */
+    @Override
+    void close();
+
+}
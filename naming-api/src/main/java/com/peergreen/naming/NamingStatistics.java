@@ -0,0 +1,40 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming;
+
+/**
+ * Statistics of the naming contexts, published with the naming manager.
+ * @author Florent Benoit
+ */
+public interface NamingStatistics {
+
+    /**
+     * @return the number of names found in the caches of parsed names
+     */
+    long getNameCacheHits();
+
+    /**
+     * @return the number of names not found in the caches of parsed names
+     */
+    long getNameCacheMisses();
+
+    /**
+     * @return the number of classloader contexts removed because their
+     * classloader has been garbage collected without being unbound
+     */
+    long getReclaimedContexts();
+
+}
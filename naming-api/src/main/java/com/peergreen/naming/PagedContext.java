@@ -0,0 +1,37 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming;
+
+import javax.naming.NamingException;
+
+/**
+ * Context allowing to list its bindings page by page, ordered by name.
+ * @author Florent Benoit
+ */
+public interface PagedContext {
+
+    /**
+     * Lists a page of the bindings of the named context.
+     * @param name the name of the context to list
+     * @param cursor the cursor returned with the previous page or null for the first page
+     * @param pageSize the maximum number of bindings of the page
+     * @param prefix only the names starting with this prefix are listed (null for all the names)
+     * @return the page of bindings
+     * @throws NamingException if a naming exception is encountered
+     */
+    BindingsPage listBindings(String name, String cursor, int pageSize, String prefix) throws NamingException;
+
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming;
+
+/**
+ * Context that can be made read-only once it has been populated.
+ * @author Florent Benoit
+ */
+public interface SealableContext {
+
+    /**
+     * Seals this context and the subcontexts it has created. Any further
+     * modification will fail with an OperationNotSupportedException.
+     */
+    void seal();
+
+    /**
+     * @return true if this context has been sealed
+     */
+    boolean isSealed();
+
+}
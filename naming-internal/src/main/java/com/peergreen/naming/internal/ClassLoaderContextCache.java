@@ -0,0 +1,141 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal;
+
+import java.lang.ref.ReferenceQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.Context;
+
+/**
+ * Contexts found for the classloaders (including the classloaders without
+ * any context). The classloaders are weakly referenced and compared by
+ * identity. The cache is invalidated each time a context is bound or
+ * unbound for a classloader.
+ * @author Florent Benoit
+ */
+final class ClassLoaderContextCache {
+
+    /**
+     * Resolved contexts by classloader.
+     */
+    private final ConcurrentMap<Object, Resolution> resolutions = new ConcurrentHashMap<Object, Resolution>();
+
+    /**
+     * Classloaders that have been garbage collected.
+     */
+    private final ReferenceQueue<ClassLoader> collected = new ReferenceQueue<ClassLoader>();
+
+    /**
+     * Incremented each time the contexts of the classloaders are changed.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Gets the resolution of the given classloader.
+     * @param classLoader the classloader
+     * @return the resolution or null if it is not known
+     */
+    Resolution get(final ClassLoader classLoader) {
+        Resolution resolution = resolutions.get(new ClassLoaderKey(classLoader));
+        if (resolution == null || resolution.generation != generation.get()) {
+            return null;
+        }
+        return resolution;
+    }
+
+    /**
+     * @return the current generation, to give to {@link #put(ClassLoader, Context, long)}
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Keeps the context found for the given classloader.
+     * @param classLoader the classloader
+     * @param context the context (null if there is none)
+     * @param resolvedGeneration the generation read before resolving the context
+     */
+    void put(final ClassLoader classLoader, final Context context, final long resolvedGeneration) {
+        expunge();
+        resolutions.put(new WeakClassLoaderKey(classLoader, collected), new Resolution(context, resolvedGeneration));
+    }
+
+    /**
+     * Forgets all the resolved contexts.
+     */
+    void invalidate() {
+        generation.incrementAndGet();
+        resolutions.clear();
+    }
+
+    /**
+     * @return the number of cached classloaders
+     */
+    int size() {
+        expunge();
+        return resolutions.size();
+    }
+
+    /**
+     * Removes the entries of the garbage collected classloaders.
+     */
+    private void expunge() {
+        Object key;
+        while ((key = collected.poll()) != null) {
+            resolutions.remove(key);
+        }
+    }
+
+    /**
+     * Context found for a classloader.
+     * @author Florent Benoit
+     */
+    static final class Resolution {
+
+        /**
+         * The context (null if there is none).
+         */
+        private final Context context;
+
+        /**
+         * Generation when the context has been resolved.
+         */
+        private final long generation;
+
+        /**
+         * Constructor.
+         * @param context the context
+         * @param generation the generation when the context has been resolved
+         */
+        Resolution(final Context context, final long generation) {
+            this.context = context;
+            this.generation = generation;
+        }
+
+        /**
+         * @return the context (null if there is none)
+         */
+        Context getContext() {
+            return context;
+        }
+    }
+
+}
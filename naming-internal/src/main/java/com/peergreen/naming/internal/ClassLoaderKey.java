@@ -0,0 +1,66 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal;
+
+/**
+ * Key used to look up a classloader in a map keyed by
+ * {@link WeakClassLoaderKey}, without referencing it weakly.
+ * @author Florent Benoit
+ */
+final class ClassLoaderKey {
+
+    /**
+     * The classloader.
+     */
+    private final ClassLoader classLoader;
+
+    /**
+     * Constructor.
+     * @param classLoader the classloader
+     */
+    ClassLoaderKey(final ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * @return the classloader
+     */
+    ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    /**
+     * @return the identity hash code of the classloader
+     */
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(classLoader);
+    }
+
+    /**
+     * @param obj the other key
+     * @return true if both keys reference the same classloader
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj instanceof WeakClassLoaderKey) {
+            return ((WeakClassLoaderKey) obj).get() == classLoader;
+        }
+        return obj instanceof ClassLoaderKey && ((ClassLoaderKey) obj).classLoader == classLoader;
+    }
+
+}
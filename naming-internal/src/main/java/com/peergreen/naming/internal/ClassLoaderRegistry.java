@@ -0,0 +1,139 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.naming.Context;
+import javax.naming.NamingException;
+
+/**
+ * Contexts bound for classloaders. The classloaders are weakly referenced:
+ * when a module is undeployed without unbinding its context, the entry is
+ * removed once its classloader has been garbage collected, and it is
+ * reported.
+ * Note that a context referencing its own classloader (through the bound
+ * objects) keeps it reachable: the context still has to be unbound.
+ * @author Florent Benoit
+ */
+final class ClassLoaderRegistry {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ClassLoaderRegistry.class.getName());
+
+    /**
+     * Contexts by classloader.
+     */
+    private final ConcurrentMap<Object, Context> contexts = new ConcurrentHashMap<Object, Context>();
+
+    /**
+     * Classloaders that have been garbage collected.
+     */
+    private final ReferenceQueue<ClassLoader> collected = new ReferenceQueue<ClassLoader>();
+
+    /**
+     * Number of contexts removed because their classloader has been garbage
+     * collected without being unbound.
+     */
+    private final AtomicLong reclaimed = new AtomicLong();
+
+    /**
+     * Binds the context of a classloader.
+     * @param classLoader the classloader
+     * @param context the context
+     */
+    void put(final ClassLoader classLoader, final Context context) {
+        expunge();
+        contexts.put(new WeakClassLoaderKey(classLoader, collected), context);
+    }
+
+    /**
+     * Unbinds the context of a classloader.
+     * @param classLoader the classloader
+     */
+    void remove(final ClassLoader classLoader) {
+        expunge();
+        contexts.remove(new ClassLoaderKey(classLoader));
+    }
+
+    /**
+     * Gets the context of a classloader.
+     * @param classLoader the classloader
+     * @return the context or null if there is none
+     */
+    Context get(final ClassLoader classLoader) {
+        return contexts.get(new ClassLoaderKey(classLoader));
+    }
+
+    /**
+     * @return the number of bound contexts
+     */
+    int size() {
+        expunge();
+        return contexts.size();
+    }
+
+    /**
+     * @return the number of contexts removed because their classloader has been garbage collected
+     */
+    long getReclaimed() {
+        return reclaimed.get();
+    }
+
+    /**
+     * Removes the contexts of the garbage collected classloaders.
+     * @return true if a context has been removed
+     */
+    boolean expunge() {
+        boolean removed = false;
+        Reference<? extends ClassLoader> key;
+        while ((key = collected.poll()) != null) {
+            Context context = contexts.remove(key);
+            if (context != null) {
+                removed = true;
+                reclaimed.incrementAndGet();
+                if (LOGGER.isLoggable(Level.WARNING)) {
+                    LOGGER.log(Level.WARNING, "Context ''{0}'' has been reclaimed as its classloader has been garbage "
+                            + "collected without unbinding it", nameOf(context));
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Gets the name of a context for the logs.
+     * @param context the context
+     * @return the name
+     */
+    private static String nameOf(final Context context) {
+        try {
+            return context.getNameInNamespace();
+        } catch (NamingException e) {
+            return context.toString();
+        }
+    }
+
+}
@@ -95,8 +95,8 @@ public class DefaultJavaContextFactory implements JavaContextFactory {
     @Override
     public Context createContext(String name, Context javaAppContext, Context javaModuleContext) throws NamingException {
 
-        // Create a new environment
-        ContextImpl ctx = new ContextImpl(name);
+        // Create a new environment (comp, module, app and global in fixed slots)
+        ContextImpl ctx = new JavaRootContext(name);
 
         // Create subContext
         ContextImpl compCtx = (ContextImpl) ctx.createSubcontext(COMP.getName());
@@ -15,16 +15,32 @@
  */
 package com.peergreen.naming.internal;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.naming.Context;
+import javax.naming.NamingException;
 
 import org.apache.felix.ipojo.annotations.Component;
 import org.apache.felix.ipojo.annotations.Instantiate;
+import org.apache.felix.ipojo.annotations.Invalidate;
 import org.apache.felix.ipojo.annotations.Provides;
+import org.apache.felix.ipojo.annotations.Validate;
 
+import com.peergreen.naming.ContextPropagation;
+import com.peergreen.naming.ContextScope;
 import com.peergreen.naming.JavaNamingManager;
+import com.peergreen.naming.LookupHandle;
+import com.peergreen.naming.NamingSnapshot;
+import com.peergreen.naming.NamingStatistics;
+import com.peergreen.naming.internal.context.ContextImpl;
 
 /**
  *
@@ -34,81 +50,320 @@ import com.peergreen.naming.JavaNamingManager;
 @Component
 @Provides
 @Instantiate
-public class DefaultJavaNamingManager implements JavaNamingManager {
+public class DefaultJavaNamingManager implements JavaNamingManager, NamingStatistics {
 
     /**
-     * Current active context by threads
+     * Logger.
      */
-    private final ThreadLocal<Context> threadActiveContext;
+    private static final Logger LOGGER = Logger.getLogger(DefaultJavaNamingManager.class.getName());
 
     /**
-     * Previous active context by threads
+     * Scopes opened by threads (top of an immutable stack of contexts),
+     * inherited by the created threads.
      */
-    private final ThreadLocal<Context> threadPreviousContext;
+    private final ThreadLocal<ThreadContextScope> inheritableThreadScope;
 
     /**
-     * Context by classloader.
+     * Scopes opened by threads, not inherited.
      */
-    private final Map<ClassLoader, Context> contextByClassLoaders;
+    private final ThreadLocal<ThreadContextScope> explicitThreadScope;
 
+    /**
+     * Scopes used for the selected propagation.
+     */
+    private volatile ThreadLocal<ThreadContextScope> threadScope;
+
+    /**
+     * Propagation of the scopes to the created threads.
+     */
+    private volatile ContextPropagation contextPropagation;
+
+    /**
+     * Context by classloader (weakly referenced).
+     */
+    private final ClassLoaderRegistry contextByClassLoaders;
+
+    /**
+     * Contexts resolved for the classloaders (with their ancestors).
+     */
+    private final ClassLoaderContextCache resolvedContexts;
+
+    /**
+     * Executor notifying the naming listeners while this component is started.
+     */
+    private ThreadPoolExecutor eventExecutor;
+
+    /**
+     * Pool releasing the destroyed contexts while this component is started.
+     */
+    private ForkJoinPool destroyPool;
 
     public DefaultJavaNamingManager() {
-        this.threadActiveContext = new InheritableThreadLocal<>();
-        this.threadPreviousContext = new InheritableThreadLocal<>();
-        this.contextByClassLoaders = new ConcurrentHashMap<>();
+        this.inheritableThreadScope = new InheritableThreadLocal<>();
+        this.explicitThreadScope = new ThreadLocal<>();
+        setContextPropagation(getConfiguredPropagation());
+        this.contextByClassLoaders = new ClassLoaderRegistry();
+        this.resolvedContexts = new ClassLoaderContextCache();
+    }
+
+    /**
+     * Starts the thread notifying the naming listeners and the pool
+     * releasing the destroyed contexts. The thread is created now, and not
+     * by the first thread changing a context, so that it doesn't inherit the
+     * classloader and the scopes of an application.
+     */
+    @Validate
+    public void start() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new EventThreadFactory());
+        executor.prestartAllCoreThreads();
+        this.eventExecutor = executor;
+        ContextImpl.setEventExecutor(executor);
+        this.destroyPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                new DestroyThreadFactory(), null, false);
+        ContextImpl.setDestroyPool(destroyPool);
+    }
+
+    /**
+     * Stops the thread notifying the naming listeners once the queued
+     * notifications are done, and the pool releasing the destroyed contexts.
+     */
+    @Invalidate
+    public void stop() {
+        ContextImpl.setEventExecutor(null);
+        ContextImpl.setDestroyPool(null);
+        if (eventExecutor != null) {
+            eventExecutor.shutdown();
+            eventExecutor = null;
+        }
+        if (destroyPool != null) {
+            destroyPool.shutdown();
+            destroyPool = null;
+        }
     }
 
+    /**
+     * @return the propagation set by the {@link ContextPropagation#PROPERTY}
+     * property, {@link ContextPropagation#INHERIT} if it is not set or unknown
+     */
+    private static ContextPropagation getConfiguredPropagation() {
+        String propagation = System.getProperty(ContextPropagation.PROPERTY);
+        if (propagation == null) {
+            return ContextPropagation.INHERIT;
+        }
+        try {
+            return ContextPropagation.valueOf(propagation.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Unknown context propagation ''{0}'' for the property ''{1}'', using {2}",
+                    new Object[] {propagation, ContextPropagation.PROPERTY, ContextPropagation.INHERIT});
+            return ContextPropagation.INHERIT;
+        }
+    }
 
     @Override
     public void bindThreadContext(Context javaContext) {
-        threadPreviousContext.set(threadActiveContext.get());
-        threadActiveContext.set(javaContext);
-
+        openScope(javaContext);
     }
 
     @Override
     public void unbindThreadContext() {
-        threadActiveContext.set(threadPreviousContext.get());
-        threadPreviousContext.set(null);
+        ThreadLocal<ThreadContextScope> scopes = threadScope;
+        ThreadContextScope scope = scopes.get();
+        if (scope != null) {
+            scopes.set(scope.getPrevious());
+        }
+    }
+
+    @Override
+    public ContextScope openScope(Context javaContext) {
+        ThreadLocal<ThreadContextScope> scopes = threadScope;
+        ThreadContextScope scope = new ThreadContextScope(this, javaContext, scopes.get());
+        scopes.set(scope);
+        return scope;
+    }
+
+    @Override
+    public ContextPropagation getContextPropagation() {
+        return contextPropagation;
+    }
+
+    @Override
+    public void setContextPropagation(ContextPropagation contextPropagation) {
+        if (contextPropagation == null) {
+            throw new IllegalArgumentException("No context propagation");
+        }
+        if (contextPropagation == ContextPropagation.EXPLICIT) {
+            this.threadScope = explicitThreadScope;
+        } else {
+            this.threadScope = inheritableThreadScope;
+        }
+        this.contextPropagation = contextPropagation;
+    }
 
+    /**
+     * Closes the given scope of the current thread. The scopes opened after
+     * it are closed too. Nothing is done if the scope is already closed or
+     * if it has been opened by another thread.
+     * @param scope the scope to close
+     */
+    void closeScope(ThreadContextScope scope) {
+        ThreadLocal<ThreadContextScope> scopes = threadScope;
+        ThreadContextScope current = scopes.get();
+        if (current == scope) {
+            scopes.set(scope.getPrevious());
+            return;
+        }
+        // closed out of order ?
+        while (current != null) {
+            current = current.getPrevious();
+            if (current == scope) {
+                scopes.set(scope.getPrevious());
+                return;
+            }
+        }
     }
 
     @Override
     public void bindClassLoaderContext(ClassLoader classLoader, Context javaContext) {
         contextByClassLoaders.put(classLoader, javaContext);
+        resolvedContexts.invalidate();
     }
 
     @Override
     public void unbindClassLoaderContext(ClassLoader classLoader) {
         contextByClassLoaders.remove(classLoader);
+        resolvedContexts.invalidate();
     }
 
 
     @Override
     public Context getContext() {
-        // Search in thread
-        Context context = threadActiveContext.get();
+        Context context = getActiveContext();
         if (context != null) {
             return context;
         }
 
-        // search for classloader
-        ClassLoader classloader = Thread.currentThread().getContextClassLoader();
-        context = contextByClassLoaders.get(classloader);
+        // return an empty java URL context for component that are not yet registered
+        return new JavaURLContext(this);
+    }
+
+    @Override
+    public Context getActiveContext() {
+        // Search in thread
+        Context context = null;
+        ThreadContextScope scope = threadScope.get();
+        if (scope != null) {
+            context = scope.getContext();
+        }
         if (context != null) {
             return context;
         }
-        // search with parent classloader
-        ClassLoader parentclassloader = classloader.getParent();
-        if (parentclassloader != null) {
-            context = contextByClassLoaders.get(parentclassloader);
+
+        // search for classloader (or its ancestors)
+        ClassLoader classloader = Thread.currentThread().getContextClassLoader();
+        if (classloader != null) {
+            ClassLoaderContextCache.Resolution resolution = resolvedContexts.get(classloader);
+            if (resolution != null) {
+                context = resolution.getContext();
+            } else {
+                if (contextByClassLoaders.expunge()) {
+                    resolvedContexts.invalidate();
+                }
+                long generation = resolvedContexts.getGeneration();
+                context = resolveContext(classloader);
+                resolvedContexts.put(classloader, context, generation);
+            }
+        }
+        return context;
+    }
+
+    @Override
+    public long getReclaimedContexts() {
+        contextByClassLoaders.expunge();
+        return contextByClassLoaders.getReclaimed();
+    }
+
+    /**
+     * Finds the context bound for the given classloader or for the closest
+     * of its ancestors.
+     * @param classloader the classloader
+     * @return the context or null if there is none
+     */
+    private Context resolveContext(ClassLoader classloader) {
+        ClassLoader current = classloader;
+        while (current != null) {
+            Context context = contextByClassLoaders.get(current);
             if (context != null) {
                 return context;
             }
+            current = current.getParent();
+        }
+        return null;
+    }
+
+    @Override
+    public LookupHandle compile(String name) throws NamingException {
+        return new JavaLookupHandle(this, name, JavaURLContext.getRelativeName(name));
+    }
+
+    @Override
+    public NamingSnapshot pinSnapshot() {
+        return ContextImpl.pinSnapshot();
+    }
+
+    @Override
+    public long getNameCacheHits() {
+        return ContextImpl.getNameCache().getHits() + JavaURLContext.getNameCache().getHits();
+    }
+
+    @Override
+    public long getNameCacheMisses() {
+        return ContextImpl.getNameCache().getMisses() + JavaURLContext.getNameCache().getMisses();
+    }
+
+    /**
+     * Creates the thread notifying the naming listeners, without context
+     * classloader nor scope.
+     * @author Florent Benoit
+     */
+    private final class EventThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    // scopes inherited from the thread starting the component
+                    inheritableThreadScope.remove();
+                    runnable.run();
+                }
+            }, "Peergreen Naming Events");
+            thread.setDaemon(true);
+            thread.setContextClassLoader(null);
+            return thread;
         }
+    }
 
-        // return an empty java URL context for component that are not yet registered
-        return new JavaURLContext(this);
+    /**
+     * Creates the threads releasing the destroyed contexts, without context
+     * classloader nor scope.
+     * @author Florent Benoit
+     */
+    private final class DestroyThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+        @Override
+        public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+                @Override
+                protected void onStart() {
+                    super.onStart();
+                    // scopes inherited from the thread starting the worker
+                    inheritableThreadScope.remove();
+                }
+            };
+            thread.setContextClassLoader(null);
+            return thread;
+        }
     }
 
 }
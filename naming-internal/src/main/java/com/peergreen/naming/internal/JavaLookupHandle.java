@@ -0,0 +1,85 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal;
+
+import javax.naming.Context;
+import javax.naming.NamingException;
+
+import com.peergreen.naming.JavaNamingManager;
+import com.peergreen.naming.LookupHandle;
+import com.peergreen.naming.internal.context.ContextImpl;
+
+/**
+ * Handle of a java: name. The name is compiled once for each context it is
+ * used with (like the contexts of the components sharing the handle). The
+ * compiled forms are kept by the contexts themselves, so that the handle
+ * doesn't keep the contexts of the undeployed components.
+ * @author Florent Benoit
+ */
+final class JavaLookupHandle implements LookupHandle {
+
+    /**
+     * Manager providing the current context.
+     */
+    private final JavaNamingManager javaNamingManager;
+
+    /**
+     * The java: name.
+     */
+    private final String name;
+
+    /**
+     * The name without the java: prefix.
+     */
+    private final String relativeName;
+
+    /**
+     * Constructor.
+     * @param javaNamingManager the manager providing the current context
+     * @param name the java: name
+     * @param relativeName the name without the java: prefix
+     */
+    JavaLookupHandle(final JavaNamingManager javaNamingManager, final String name, final String relativeName) {
+        this.javaNamingManager = javaNamingManager;
+        this.name = name;
+        this.relativeName = relativeName;
+    }
+
+    /**
+     * @return the java: name
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Retrieves the object bound to the name in the current context.
+     * @return the object bound to the name
+     * @throws NamingException if a naming exception is encountered
+     */
+    @Override
+    public Object lookup() throws NamingException {
+        Context context = javaNamingManager.getContext();
+        if (!(context instanceof ContextImpl)) {
+            // can't be compiled (like the placeholder used when no context is bound)
+            return context.lookup(relativeName);
+        }
+        return ((ContextImpl) context).compile(relativeName).lookup();
+    }
+
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.naming.Context;
+
+import com.peergreen.naming.internal.context.ContextImpl;
+
+/**
+ * Root of a java: context. The comp, module, app and global contexts are
+ * also kept in fixed slots indexed by {@link ContextType}, so that the first
+ * component of a java: name (already parsed and cached by the lookup) is
+ * dispatched without probing the bindings. Any other name and all the other
+ * operations are handled as in a regular context.
+ * @author Florent Benoit
+ */
+public class JavaRootContext extends ContextImpl {
+
+    /**
+     * Contexts bound with the names of the context types (by ordinal).
+     */
+    private final AtomicReferenceArray<Context> slots = new AtomicReferenceArray<Context>(ContextType.values().length);
+
+    /**
+     * Constructor.
+     * @param id the id of the context
+     */
+    public JavaRootContext(final String id) {
+        super(id);
+    }
+
+    /**
+     * Gets the object bound to the given atomic name. The slots hold the
+     * current contexts, so the lookups done under a pinned snapshot use the
+     * bindings.
+     * @param name the atomic name
+     * @param version the pinned version or -1 for the current binding
+     * @return the object or null if the name was not bound
+     */
+    @Override
+    protected Object getBinding(final String name, final long version) {
+        if (version < 0) {
+            ContextType type = type(name);
+            if (type != null) {
+                Context slot = slots.get(type.ordinal());
+                if (slot != null) {
+                    return slot;
+                }
+            }
+        }
+        return super.getBinding(name, version);
+    }
+
+    /**
+     * Gets the context type with the given name.
+     * @param name the atomic name
+     * @return the context type or null if the name is not the name of a context type
+     */
+    private static ContextType type(final String name) {
+        ContextType type;
+        switch (name.length()) {
+            case 3:
+                type = ContextType.APP;
+                break;
+            case 4:
+                type = ContextType.COMP;
+                break;
+            case 6:
+                if (name.charAt(0) == 'm') {
+                    type = ContextType.MODULE;
+                } else {
+                    type = ContextType.GLOBAL;
+                }
+                break;
+            default:
+                return null;
+        }
+        if (name.equals(type.getName())) {
+            return type;
+        }
+        return null;
+    }
+
+    /**
+     * Keeps the slots in sync with the bindings.
+     * @param name the atomic name
+     * @param obj the new object or null if the name has been unbound
+     */
+    @Override
+    protected void bindingChanged(final String name, final Object obj) {
+        ContextType type = type(name);
+        if (type == null) {
+            return;
+        }
+        if (obj instanceof Context) {
+            slots.set(type.ordinal(), (Context) obj);
+        } else {
+            slots.set(type.ordinal(), null);
+        }
+    }
+
+}
@@ -16,6 +16,8 @@
 package com.peergreen.naming.internal;
 
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.naming.Binding;
 import javax.naming.Context;
@@ -25,6 +27,9 @@ import javax.naming.NameNotFoundException;
 import javax.naming.NameParser;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.OperationNotSupportedException;
+import javax.naming.event.EventContext;
+import javax.naming.event.NamingListener;
 
 import org.apache.felix.ipojo.annotations.Component;
 import org.apache.felix.ipojo.annotations.Instantiate;
@@ -32,7 +37,11 @@ import org.apache.felix.ipojo.annotations.Provides;
 import org.apache.felix.ipojo.annotations.Requires;
 import org.apache.felix.ipojo.annotations.StaticServiceProperty;
 
+import com.peergreen.naming.BatchContext;
+import com.peergreen.naming.BindingsPage;
 import com.peergreen.naming.JavaNamingManager;
+import com.peergreen.naming.PagedContext;
+import com.peergreen.naming.internal.context.NameCache;
 
 /**
  * Manages the java: context
@@ -42,13 +51,18 @@ import com.peergreen.naming.JavaNamingManager;
 @Component
 @Provides(properties=@StaticServiceProperty(name="Context", value="JavaURLContext", type="java.lang.String"))
 @Instantiate
-public class JavaURLContext implements Context {
+public class JavaURLContext implements EventContext, PagedContext, BatchContext {
 
     /**
      * java: prefix.
      */
     private static final String JAVA_PREFIX = "java:";
 
+    /**
+     * Cache of the relative names (absolute name <--> relative name).
+     */
+    private static final NameCache<String> RELATIVE_NAMES = new NameCache<>();
+
     private final JavaNamingManager javaNamingManager;
 
     public JavaURLContext(@Requires JavaNamingManager javaNamingManager) {
@@ -61,8 +75,11 @@ public class JavaURLContext implements Context {
      * @return the relative name (without prefix).
      * @throws NamingException if the naming failed.
      */
-    private String getRelativeName(final String name) throws NamingException {
-        String newName = name;
+    static String getRelativeName(final String name) throws NamingException {
+        String newName = RELATIVE_NAMES.get(name);
+        if (newName != null) {
+            return newName;
+        }
         // We suppose that all names must be prefixed as this
         if (!name.startsWith(JAVA_PREFIX)) {
             throw new NameNotFoundException("Invalid name:" + name);
@@ -72,6 +89,7 @@ public class JavaURLContext implements Context {
         } else {
             newName = name.substring(JAVA_PREFIX.length());
         }
+        RELATIVE_NAMES.put(name, newName);
 
         return newName;
     }
@@ -135,6 +153,37 @@ public class JavaURLContext implements Context {
         findContext().bind(getRelativeName(name), obj);
     }
 
+    /**
+     * Binds all the given objects.
+     * @param bindings the objects to bind, by name
+     * @return the exceptions of the names that have not been bound (empty if all the names have been bound)
+     * @throws NamingException if a naming exception is encountered
+     */
+    @Override
+    public Map<String, NamingException> bindAll(final Map<String, ?> bindings) throws NamingException {
+        Context context = findContext();
+        if (!(context instanceof BatchContext)) {
+            throw new OperationNotSupportedException("Batch operations are not supported by the java: context");
+        }
+        Map<String, NamingException> failures = new LinkedHashMap<String, NamingException>();
+        Map<String, Object> relativeBindings = new LinkedHashMap<String, Object>();
+        Map<String, String> names = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, ?> entry : bindings.entrySet()) {
+            try {
+                String relativeName = getRelativeName(entry.getKey());
+                relativeBindings.put(relativeName, entry.getValue());
+                names.put(relativeName, entry.getKey());
+            } catch (NamingException e) {
+                failures.put(entry.getKey(), e);
+            }
+        }
+        // Report the failures with the names given by the caller
+        for (Map.Entry<String, NamingException> entry : ((BatchContext) context).bindAll(relativeBindings).entrySet()) {
+            failures.put(names.get(entry.getKey()), entry.getValue());
+        }
+        return failures;
+    }
+
     /**
      * Binds a name to an object, overwriting any existing binding. All
      * intermediate contexts and the target context (that named by all but
@@ -272,6 +321,25 @@ public class JavaURLContext implements Context {
         return findContext().listBindings(getRelativeName(name));
     }
 
+    /**
+     * Lists a page of the bindings of the named context, ordered by name.
+     * @param name the name of the context to list
+     * @param cursor the cursor returned with the previous page or null for the first page
+     * @param pageSize the maximum number of bindings of the page
+     * @param prefix only the names starting with this prefix are listed (null for all the names)
+     * @return the page of bindings
+     * @throws NamingException if a naming exception is encountered
+     */
+    @Override
+    public BindingsPage listBindings(final String name, final String cursor, final int pageSize,
+            final String prefix) throws NamingException {
+        Context context = findContext();
+        if (context instanceof PagedContext) {
+            return ((PagedContext) context).listBindings(getRelativeName(name), cursor, pageSize, prefix);
+        }
+        throw new OperationNotSupportedException("Paged listing is not supported by the context of '" + name + "'");
+    }
+
     /**
      * Destroys the named context and removes it from the namespace. Any
      * attributes associated with the name are also removed. Intermediate
@@ -482,6 +550,74 @@ public class JavaURLContext implements Context {
         return JAVA_PREFIX;
     }
 
+    /**
+     * Adds a listener for receiving naming events fired when the object(s)
+     * identified by a target and scope changes. The events are fired by the
+     * current context, with names relative to it.
+     * @param target the name of the object to listen to
+     * @param scope the scope (object, one level or subtree)
+     * @param listener the listener to notify
+     * @throws NamingException if the target is not found
+     */
+    @Override
+    public void addNamingListener(final Name target, final int scope, final NamingListener listener)
+            throws NamingException {
+        findEventContext().addNamingListener(getRelativeName(target), scope, listener);
+    }
+
+    /**
+     * Adds a listener for receiving naming events fired when the object(s)
+     * identified by a target and scope changes. The events are fired by the
+     * current context, with names relative to it.
+     * @param target the name of the object to listen to
+     * @param scope the scope (object, one level or subtree)
+     * @param listener the listener to notify
+     * @throws NamingException if the target is not found
+     */
+    @Override
+    public void addNamingListener(final String target, final int scope, final NamingListener listener)
+            throws NamingException {
+        findEventContext().addNamingListener(getRelativeName(target), scope, listener);
+    }
+
+    /**
+     * Removes a listener registered on the current context.
+     * @param listener the listener to remove
+     * @throws NamingException if a naming exception is encountered
+     */
+    @Override
+    public void removeNamingListener(final NamingListener listener) throws NamingException {
+        findEventContext().removeNamingListener(listener);
+    }
+
+    /**
+     * @return true as the targets of the listeners must exist
+     * @throws NamingException if a naming exception is encountered
+     */
+    @Override
+    public boolean targetMustExist() throws NamingException {
+        return findEventContext().targetMustExist();
+    }
+
+    /**
+     * @return the current context, as an event context
+     * @throws NamingException if the current context doesn't support events
+     */
+    private EventContext findEventContext() throws NamingException {
+        Context context = findContext();
+        if (!(context instanceof EventContext)) {
+            throw new OperationNotSupportedException("Events are not supported by the java: context");
+        }
+        return (EventContext) context;
+    }
+
+    /**
+     * @return the cache of the relative names.
+     */
+    public static NameCache<String> getNameCache() {
+        return RELATIVE_NAMES;
+    }
+
     /**
      * @return the Context associated with the current thread.
      * @throws NamingException if no context is found.
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal;
+
+import javax.naming.Context;
+
+import com.peergreen.naming.ContextScope;
+
+/**
+ * Element of the stack of the contexts bound on a thread. It is immutable:
+ * opening a scope pushes a new element and closing it sets its previous
+ * element back.
+ * @author Florent Benoit
+ */
+final class ThreadContextScope implements ContextScope {
+
+    /**
+     * Manager owning the stack.
+     */
+    private final DefaultJavaNamingManager javaNamingManager;
+
+    /**
+     * The bound context.
+     */
+    private final Context context;
+
+    /**
+     * Scope that was opened when this one has been opened.
+     */
+    private final ThreadContextScope previous;
+
+    /**
+     * Constructor.
+     * @param javaNamingManager the manager owning the stack
+     * @param context the bound context
+     * @param previous the scope that was opened when this one has been opened
+     */
+    ThreadContextScope(final DefaultJavaNamingManager javaNamingManager, final Context context,
+            final ThreadContextScope previous) {
+        this.javaNamingManager = javaNamingManager;
+        this.context = context;
+        this.previous = previous;
+    }
+
+    /**
+     * @return the context bound by this scope
+     */
+    @Override
+    public Context getContext() {
+        return context;
+    }
+
+    /**
+     * @return the scope that was opened when this one has been opened
+     */
+    ThreadContextScope getPrevious() {
+        return previous;
+    }
+
+    /**
+     * Closes this scope.
+     */
+    @Override
+    public void close() {
+        javaNamingManager.closeScope(this);
+    }
+
+}
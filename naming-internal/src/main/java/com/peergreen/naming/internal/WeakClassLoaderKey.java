@@ -0,0 +1,71 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * Map key referencing weakly a classloader, compared by identity. It can be
+ * looked up with a {@link ClassLoaderKey}.
+ * @author Florent Benoit
+ */
+final class WeakClassLoaderKey extends WeakReference<ClassLoader> {
+
+    /**
+     * Identity hash code of the classloader.
+     */
+    private final int hash;
+
+    /**
+     * Constructor.
+     * @param classLoader the classloader
+     * @param queue the queue notified when the classloader is collected
+     */
+    WeakClassLoaderKey(final ClassLoader classLoader, final ReferenceQueue<ClassLoader> queue) {
+        super(classLoader, queue);
+        this.hash = System.identityHashCode(classLoader);
+    }
+
+    /**
+     * @return the identity hash code of the classloader
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * @param obj the other key
+     * @return true if both keys reference the same classloader
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj instanceof ClassLoaderKey) {
+            return ((ClassLoaderKey) obj).getClassLoader() == get();
+        }
+        if (obj instanceof WeakClassLoaderKey) {
+            ClassLoader classLoader = get();
+            return classLoader != null && classLoader == ((WeakClassLoaderKey) obj).get();
+        }
+        return false;
+    }
+
+}
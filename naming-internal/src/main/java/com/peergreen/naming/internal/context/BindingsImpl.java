@@ -16,7 +16,7 @@
 
 package com.peergreen.naming.internal.context;
 
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
@@ -31,22 +31,21 @@ import javax.naming.NamingException;
 public class BindingsImpl implements NamingEnumeration<Binding> {
 
     /**
-     * list of names.
+     * Snapshot of the bindings.
      */
-    private final Iterator<String> names;
+    private final List<Map.Entry<String, Object>> bindings;
 
     /**
-     * List of bindings.
+     * Index of the next binding.
      */
-    private final Map<String, Object> bindings;
+    private int index = 0;
 
     /**
      * Constructor.
-     * @param bindings list of bindings
+     * @param bindings snapshot of the bindings (it is not copied)
      */
-    public BindingsImpl(final Map<String, Object> bindings) {
+    public BindingsImpl(final List<Map.Entry<String, Object>> bindings) {
         this.bindings = bindings;
-        this.names = bindings.keySet().iterator();
     }
 
     /**
@@ -62,8 +61,11 @@ public class BindingsImpl implements NamingEnumeration<Binding> {
      */
     @Override
     public Binding next() throws NamingException {
-        String name = names.next();
-        return new Binding(name, bindings.get(name));
+        if (index >= bindings.size()) {
+            throw new NoSuchElementException();
+        }
+        Map.Entry<String, Object> binding = bindings.get(index++);
+        return new Binding(binding.getKey(), binding.getValue());
     }
 
     /**
@@ -89,7 +91,7 @@ public class BindingsImpl implements NamingEnumeration<Binding> {
      */
     @Override
     public boolean hasMore() throws NamingException {
-        return names.hasNext();
+        return index < bindings.size();
     }
 
     /**
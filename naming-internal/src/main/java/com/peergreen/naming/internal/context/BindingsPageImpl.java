@@ -0,0 +1,67 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal.context;
+
+import java.util.List;
+
+import javax.naming.Binding;
+
+import com.peergreen.naming.BindingsPage;
+
+/**
+ * Implementation of a page of bindings.
+ * @author Florent Benoit
+ */
+public class BindingsPageImpl implements BindingsPage {
+
+    /**
+     * Bindings of the page.
+     */
+    private final List<Binding> bindings;
+
+    /**
+     * Cursor of the next page.
+     */
+    private final String nextCursor;
+
+    /**
+     * Constructor.
+     * @param bindings the bindings of the page
+     * @param nextCursor the cursor of the next page (null if it's the last page)
+     */
+    public BindingsPageImpl(final List<Binding> bindings, final String nextCursor) {
+        this.bindings = bindings;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return the bindings of this page, ordered by name
+     */
+    @Override
+    public List<Binding> getBindings() {
+        return bindings;
+    }
+
+    /**
+     * @return the cursor of the next page or null if this page is the last one
+     */
+    @Override
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal.context;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Bindings of a context with only a few names. They are stored in a single
+ * array (name, object, name, object, ...) that is copied on each update, so
+ * that a small context costs a few dozens of bytes instead of a hash table.
+ * Updates must be serialized by the caller; reads don't need any lock.
+ * The context switches to a hash table once {@link #MAX_SIZE} is reached.
+ * @author Florent Benoit
+ */
+final class CompactBindings extends AbstractMap<String, Object> {
+
+    /**
+     * Maximum number of bindings.
+     */
+    static final int MAX_SIZE = 8;
+
+    /**
+     * Empty bindings.
+     */
+    private static final Object[] EMPTY = new Object[0];
+
+    /**
+     * Names and objects of the bindings (never modified once published).
+     */
+    private volatile Object[] entries = EMPTY;
+
+    /**
+     * Gets the index of the given name in the given entries.
+     * @param current the entries
+     * @param key the name
+     * @return the index of the name or -1 if it is not bound
+     */
+    private static int indexOf(final Object[] current, final Object key) {
+        // names are shared by the contexts: identity first
+        for (int i = 0; i < current.length; i += 2) {
+            if (current[i] == key) {
+                return i;
+            }
+        }
+        for (int i = 0; i < current.length; i += 2) {
+            if (current[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the object bound with the given name.
+     * @param key the name
+     * @return the object or null if the name is not bound
+     */
+    @Override
+    public Object get(final Object key) {
+        Object[] current = this.entries;
+        int index = indexOf(current, key);
+        if (index < 0) {
+            return null;
+        }
+        return current[index + 1];
+    }
+
+    /**
+     * @param key the name
+     * @return true if the name is bound
+     */
+    @Override
+    public boolean containsKey(final Object key) {
+        return indexOf(this.entries, key) >= 0;
+    }
+
+    /**
+     * @return true if no other name can be added
+     */
+    boolean isFull() {
+        return this.entries.length >= MAX_SIZE * 2;
+    }
+
+    /**
+     * Binds the given name.
+     * @param key the name
+     * @param value the object
+     * @return the object that was bound or null
+     */
+    @Override
+    public Object put(final String key, final Object value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        Object[] current = this.entries;
+        int index = indexOf(current, key);
+        Object[] updated;
+        Object previous = null;
+        if (index >= 0) {
+            previous = current[index + 1];
+            updated = current.clone();
+            updated[index + 1] = value;
+        } else {
+            if (current.length >= MAX_SIZE * 2) {
+                throw new IllegalStateException("Too many bindings");
+            }
+            updated = new Object[current.length + 2];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = key;
+            updated[current.length + 1] = value;
+        }
+        this.entries = updated;
+        return previous;
+    }
+
+    /**
+     * Unbinds the given name.
+     * @param key the name
+     * @return the object that was bound or null
+     */
+    @Override
+    public Object remove(final Object key) {
+        Object[] current = this.entries;
+        int index = indexOf(current, key);
+        if (index < 0) {
+            return null;
+        }
+        Object previous = current[index + 1];
+        Object[] updated = new Object[current.length - 2];
+        System.arraycopy(current, 0, updated, 0, index);
+        System.arraycopy(current, index + 2, updated, index, current.length - index - 2);
+        this.entries = updated;
+        return previous;
+    }
+
+    /**
+     * Changes the name of a binding with a single update.
+     * @param oldKey the bound name
+     * @param newKey the new name (must not be bound)
+     */
+    void rename(final String oldKey, final String newKey) {
+        Object[] current = this.entries;
+        int index = indexOf(current, oldKey);
+        if (index < 0) {
+            return;
+        }
+        Object[] updated = current.clone();
+        updated[index] = newKey;
+        this.entries = updated;
+    }
+
+    /**
+     * @return the number of bindings
+     */
+    @Override
+    public int size() {
+        return this.entries.length / 2;
+    }
+
+    /**
+     * @return an immutable view of the current bindings
+     */
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        final Object[] current = this.entries;
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new Iterator<Map.Entry<String, Object>>() {
+                    private int index = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < current.length;
+                    }
+
+                    @Override
+                    public Map.Entry<String, Object> next() {
+                        if (index >= current.length) {
+                            throw new NoSuchElementException();
+                        }
+                        Map.Entry<String, Object> entry = new AbstractMap.SimpleImmutableEntry<String, Object>(
+                                (String) current[index], current[index + 1]);
+                        index += 2;
+                        return entry;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return current.length / 2;
+            }
+        };
+    }
+
+}
@@ -16,9 +16,33 @@
 
 package com.peergreen.naming.internal.context;
 
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import javax.naming.Binding;
 import javax.naming.CompositeName;
@@ -38,28 +62,265 @@ import javax.naming.OperationNotSupportedException;
 import javax.naming.RefAddr;
 import javax.naming.Reference;
 import javax.naming.Referenceable;
+import javax.naming.event.EventContext;
+import javax.naming.event.NamingEvent;
+import javax.naming.event.NamingListener;
+
+import com.peergreen.naming.BatchContext;
+import com.peergreen.naming.BindingsPage;
+import com.peergreen.naming.LookupHandle;
+import com.peergreen.naming.NamingSnapshot;
+import com.peergreen.naming.PagedContext;
+import com.peergreen.naming.SealableContext;
 
 /**
  * Implementation of Context interface.
  * @author Florent Benoit
  */
-public class ContextImpl implements Context {
+public class ContextImpl implements EventContext, PagedContext, BatchContext, SealableContext {
+
+    /**
+     * Environment property enabling the cache of the objects built from
+     * {@link Reference} or {@link Referenceable} bindings.
+     */
+    public static final String CACHE_REFERENCES = "com.peergreen.naming.cache.references";
+
+    /**
+     * Type of the {@link RefAddr} telling if the object built from a reference
+     * can be shared (and then cached). Its content is "false" for references
+     * that are not shareable.
+     */
+    public static final String SHAREABLE_REF_ADDR = "shareable";
+
+    /**
+     * Environment property enabling the cache of the objects targeted by
+     * {@link LinkRef} bindings.
+     */
+    public static final String CACHE_LINKS = "com.peergreen.naming.cache.links";
+
+    /**
+     * Environment property enabling the release of the subcontexts in
+     * parallel when a context is destroyed (if a pool is set, see
+     * {@link #setDestroyPool(ForkJoinPool)}).
+     */
+    public static final String PARALLEL_DESTROY = "com.peergreen.naming.destroy.parallel";
+
+    /**
+     * Environment property enabling the cache of the names that have not been
+     * found by the lookups. An entry is valid until the next modification of
+     * any context of the JVM (the names can be missing in subcontexts bound
+     * from other trees), so it only helps when the bindings are stable, like
+     * once the applications are deployed.
+     */
+    public static final String CACHE_MISSES = "com.peergreen.naming.cache.misses";
 
     /**
-     * Environment.
+     * Environment property enabling exceptions without stack trace when a
+     * name is not found.
      */
-    private Hashtable<Object, Object> environment = null;
+    public static final String STACKLESS_MISSES = "com.peergreen.naming.stackless.misses";
+
+    /**
+     * Pool releasing the destroyed contexts in parallel (null if the naming
+     * component is stopped).
+     */
+    private static volatile ForkJoinPool destroyPool = null;
+
+    /**
+     * Update being applied without keeping the previous objects.
+     */
+    static final long UNVERSIONED = -1L;
+
+    /**
+     * Maximum number of names remembered as missing by a context.
+     */
+    private static final int MAX_MISSING_NAMES = 256;
+
+    /**
+     * Environment. It is shared by all the contexts of a tree and it is never
+     * modified: a new copy is set when a property is added or removed.
+     */
+    private volatile Hashtable<Object, Object> environment = null;
 
     /**
      * Bindings (Name <--> Object).
+     * Lookups are reading this map without any lock while updates are
+     * serialized by using {@link #writeLock}. Small contexts use
+     * {@link CompactBindings}, replaced by a hash table when they grow. Once
+     * the context is sealed, it is replaced by immutable {@link SealedBindings}.
+     */
+    private volatile Map<String, Object> bindings = new CompactBindings();
+
+    /**
+     * Context that has created this context as a subcontext (if any).
+     */
+    private final ContextImpl parent;
+
+    /**
+     * Atomic name of this context in its parent, while it is bound there. It
+     * names the changes of this context for the subtree listeners of its
+     * parents.
+     */
+    private volatile String nameInParent = null;
+
+    /**
+     * Root of the tree of subcontexts (this context if it has no parent).
+     */
+    private final ContextImpl root;
+
+    /**
+     * Number of listeners registered with the subtree scope in the tree of
+     * this context (only counted by the root). When there is none, the
+     * parents of a changed context are not checked.
+     */
+    private volatile int subtreeListeners = 0;
+
+    /**
+     * Number of changes done on the structure of the tree of this context
+     * (contexts bound, unbound, wrapped or destroyed, only counted by the
+     * root). The paths kept by the compiled names are only valid for the
+     * values of the roots they go through.
+     */
+    private volatile long structure = 0L;
+
+    /**
+     * Names compiled on this context, shared by the lookup handles (created
+     * on demand). They are kept by this context only, so that a handle
+     * shared by several components doesn't keep their contexts.
+     */
+    private volatile ConcurrentMap<String, CompiledName> compiledNames = null;
+
+    /**
+     * Lock used to serialize the updates of the bindings of this context.
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * Names of the bindings sorted in natural order. It is built on demand
+     * for the paged listing and then kept up to date by each update.
+     */
+    private volatile NavigableSet<String> sortedNames = null;
+
+    /**
+     * Objects built from the references bound in this context (if enabled).
+     * They are owned by this context and closed when it is destroyed.
+     */
+    private volatile ConcurrentMap<String, ResolvedObject> resolvedObjects = null;
+
+    /**
+     * Objects targeted by the links bound in this context (if enabled). They
+     * are bound elsewhere, so they are never closed by this context.
+     */
+    private volatile ConcurrentMap<String, ResolvedObject> linkTargets = null;
+
+    /**
+     * Cache the objects built from the references ?
+     */
+    private volatile boolean cacheReferences = false;
+
+    /**
+     * Cache the targets of the links ?
      */
-    private final Map<String, Object> bindings = new HashMap<String, Object>();
+    private volatile boolean cacheLinks = false;
+
+    /**
+     * Remember the names that have not been found ?
+     */
+    private volatile boolean cacheMisses = false;
+
+    /**
+     * Throw exceptions without stack trace when a name is not found ?
+     */
+    private volatile boolean stacklessMisses = false;
+
+    /**
+     * Names that have not been found by a lookup on this context (name <-->
+     * value of the modifications counter when it was missing). It is created
+     * on the first miss and updated without any lock.
+     */
+    private volatile ConcurrentMap<String, Long> missingNames = null;
+
+    /**
+     * Creates the missing names of a context without locking it.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ContextImpl, ConcurrentMap> MISSING_NAMES =
+            AtomicReferenceFieldUpdater.newUpdater(ContextImpl.class, ConcurrentMap.class, "missingNames");
+
+    /**
+     * Listeners interested in the changes of the bindings of this context
+     * (created on demand).
+     */
+    private volatile List<ListenerRegistration> listeners = null;
+
+    /**
+     * Listeners registered by using this context (created on demand).
+     */
+    private volatile List<ListenerRegistration> registrations = null;
+
+    /**
+     * Objects bound before the last changes, kept for the pinned snapshots
+     * (name <--> previous objects, the most recent first).
+     */
+    private volatile ConcurrentMap<String, BindingHistory> history = null;
+
+    /**
+     * Oldest version needed when the previous objects were last pruned.
+     */
+    private long prunedVersion = 0L;
+
+    /**
+     * Update being applied to the bindings: its version if the previous
+     * objects are kept, {@link #UNVERSIONED} if they are not (or not yet
+     * known), else 0. The lookups under a snapshot wait for the updates
+     * started before it.
+     */
+    private volatile long applying = 0L;
+
+    /**
+     * Context used to resolve the links (created on demand).
+     */
+    private volatile Context linkContext = null;
+
+    /**
+     * Number of modifications done on the bindings of all the contexts.
+     * The cached targets of the links and the missing names are only valid
+     * for a given value.
+     */
+    private static final AtomicLong MODIFICATIONS = new AtomicLong();
+
+    /**
+     * Updates the number of changes done on the structure of a tree.
+     */
+    private static final AtomicLongFieldUpdater<ContextImpl> STRUCTURE =
+            AtomicLongFieldUpdater.newUpdater(ContextImpl.class, "structure");
+
+    /**
+     * Maximum number of names compiled on a context that are kept.
+     */
+    private static final int MAX_COMPILED_NAMES = 256;
+
+    /**
+     * Lock used to move a binding between two contexts that can't be ordered.
+     */
+    private static final Object MOVE_LOCK = new Object();
+
+    /**
+     * Updates the number of subtree listeners of a root.
+     */
+    private static final AtomicIntegerFieldUpdater<ContextImpl> SUBTREE_LISTENERS =
+            AtomicIntegerFieldUpdater.newUpdater(ContextImpl.class, "subtreeListeners");
 
     /**
      * Parser.
      */
     private static NameParser myParser = new JavaNameParser();
 
+    /**
+     * Cache of the parsed names shared by all the contexts.
+     */
+    private static final NameCache<String[]> NAMES = new NameCache<>();
+
     /**
      * Naming id.
      */
@@ -76,20 +337,44 @@ public class ContextImpl implements Context {
      */
     private boolean wrapAllOperations = false;
 
+    /**
+     * Cache of the objects found in the wrapped context (if enabled).
+     */
+    private volatile WrappedContextCache wrappedCache = null;
+
 
     /**
      * Constructor.
      * @param id id of the context.
      * @param env initial environment.
      */
-    @SuppressWarnings("unchecked")
     public ContextImpl(final String id, final Hashtable<Object, Object> env) {
-        if (env != null) {
-            this.environment = (Hashtable<Object, Object>) env.clone();
+        this(id, env, null);
+    }
+
+    /**
+     * Constructor.
+     * @param id id of the context.
+     * @param env initial environment.
+     * @param parent the context creating this context as a subcontext
+     */
+    private ContextImpl(final String id, final Hashtable<Object, Object> env, final ContextImpl parent) {
+        if (parent != null && env != null) {
+            // subcontexts are sharing the environment of their parent
+            this.environment = env;
+        } else if (env != null) {
+            this.environment = new Hashtable<Object, Object>(env);
         } else {
             this.environment = new Hashtable<Object, Object>();
         }
+        readEnvironment();
         this.id = id;
+        this.parent = parent;
+        if (parent == null) {
+            this.root = this;
+        } else {
+            this.root = parent.root;
+        }
     }
 
     /**
@@ -108,8 +393,11 @@ public class ContextImpl implements Context {
      */
     @Override
     public Object lookup(final Name name) throws NamingException {
-        // Just use the string version for now.
-        return lookup(name.toString());
+        // Delegate
+        if (wrappedContext != null && wrapAllOperations) {
+            return lookupWrapped(name, true);
+        }
+        return lookup(components(name), true, null);
     }
 
     /**
@@ -123,67 +411,273 @@ public class ContextImpl implements Context {
 
         // Delegate
         if (wrappedContext != null && wrapAllOperations) {
-            return wrappedContext.lookup(name);
+            if (wrappedCache == null) {
+                return wrappedContext.lookup(name);
+            }
+            return lookupWrapped(new CompositeName(name), true);
+        }
+        return lookup(parse(name), true, name);
+    }
+
+    /**
+     * Retrieves the named object.
+     * @param segments the components of the name of the object to look up
+     * @param followLink if a terminal link has to be followed
+     * @param name the name as given by the caller, used by the cache of
+     *        missing names (null if there is no string form)
+     * @return the object bound to name
+     * @throws NamingException if a naming exception is encountered
+     */
+    private Object lookup(final String[] segments, final boolean followLink, final String name)
+            throws NamingException {
+        // Delegate
+        if (wrappedContext != null && wrapAllOperations) {
+            return lookupWrapped(suffix(segments, 0), followLink);
         }
 
-        Name n = new CompositeName(name);
-        if (n.size() < 1) {
+        if (segments.length < 1) {
             // Empty name means this context
             return this;
         }
 
-        if (n.size() > 1) {
-            // sub context in the env tree
-            String suffix = n.getSuffix(1).toString();
-            // should throw exception if sub context not found!
-            Context subctx = lookupCtx(n.get(0));
-            return subctx.lookup(suffix);
-        }
-        // Delegate or sub context ?
-        if (wrappedContext != null) {
-            Object ret = bindings.get(name);
-            if (ret == null) {
-                return wrappedContext.lookup(name);
+        // Version pinned by the current thread (if any)
+        long snapshot = Snapshots.currentVersion();
+
+        // read before any binding, so that a miss is never remembered for a
+        // modification done while looking up
+        long modifications = MODIFICATIONS.get();
+
+        // Known as missing ?
+        ConcurrentMap<String, Long> missing = this.missingNames;
+        if (missing != null && name != null && snapshot < 0) {
+            Long version = missing.get(name);
+            if (version != null && version.longValue() == modifications) {
+                throw nameNotFound(name);
             }
         }
 
+        // walk the sub contexts in the env tree
+        ContextImpl ctx = this;
+        int last = segments.length - 1;
+        for (int i = 0; i < last; i++) {
+            // should throw exception if sub context not found!
+            Object obj = ctx.getBinding(segments[i], snapshot);
+            if (obj == null) {
+                // Delegate the remaining name ?
+                if (ctx.wrappedContext != null) {
+                    return ctx.lookupWrapped(suffix(segments, i), followLink);
+                }
+                throw missing(snapshot < 0 ? name : null, modifications, ctx, "No subcontext named '" + segments[i]
+                        + "' has been found");
+            }
+            if (!(obj instanceof ContextImpl)) {
+                if (obj instanceof Context) {
+                    return lookup((Context) obj, suffix(segments, i + 1), followLink);
+                }
+                throw new NameAlreadyBoundException(segments[i]);
+            }
+            ctx = (ContextImpl) obj;
+            if (ctx.wrappedContext != null && ctx.wrapAllOperations) {
+                return ctx.lookupWrapped(suffix(segments, i + 1), followLink);
+            }
+        }
 
+        String leaf = segments[last];
+        if (leaf.length() == 0) {
+            // Trailing separator means this context
+            return ctx;
+        }
         // leaf in the env tree
-        Object ret = this.bindings.get(name);
+        Object ret = ctx.getBinding(leaf, snapshot);
         if (ret == null) {
-            throw new NameNotFoundException(name);
+            // Delegate ?
+            if (ctx.wrappedContext != null) {
+                return ctx.lookupWrapped(new CompositeName().add(leaf), followLink);
+            }
+            throw missing(snapshot < 0 ? name : null, modifications, ctx, leaf);
         }
-        if (ret instanceof LinkRef) {
-            // Handle special case of the LinkRef since I think
-            // it's not handled by std NamingManager.getObjectInstance().
-            // The name hidden in linkref is in the initial context.
+        return ctx.resolve(leaf, ret, followLink);
+    }
 
-            InitialContext ictx = new InitialContext();
-            RefAddr ra = ((Reference) ret).get(0);
-            try {
-                ret = ictx.lookup((String) ra.getContent());
-            } catch (Exception e) {
-                NamingException ne = new NamingException(e.getMessage());
-                ne.setRootCause(e);
-                throw ne;
+    /**
+     * Gets the object bound to the given atomic name, in the given version.
+     * It is used by the lookups for each component of a name. Subclasses
+     * keeping some bindings in their own structure can override it.
+     * @param name the atomic name
+     * @param version the pinned version or -1 for the current binding
+     * @return the object or null if the name was not bound
+     */
+    protected Object getBinding(final String name, final long version) {
+        // the current binding is read before the previous objects, which are
+        // always kept before a binding is changed
+        Object current;
+        long update = this.applying;
+        if (version >= 0 && (update == UNVERSIONED || update > 0 && update <= version)) {
+            // update started before the snapshot: part of it once applied
+            synchronized (writeLock) {
+                current = this.bindings.get(name);
             }
-        } else if (ret instanceof Reference || ret instanceof Referenceable) {
-            // Use NamingManager to build an object
-            try {
-                ret = javax.naming.spi.NamingManager.getObjectInstance(ret, n, this, this.environment);
-            } catch (NamingException e) {
-                throw e;
-            } catch (Exception e) {
-                NamingException ne = new NamingException(e.getMessage());
-                ne.setRootCause(e);
-                throw ne;
+        } else {
+            current = this.bindings.get(name);
+        }
+        if (version < 0) {
+            return current;
+        }
+        ConcurrentMap<String, BindingHistory> previousObjects = this.history;
+        if (previousObjects == null) {
+            return current;
+        }
+        BindingHistory found = null;
+        BindingHistory entry = previousObjects.get(name);
+        while (entry != null && entry.getVersion() > version) {
+            found = entry;
+            entry = entry.getOlder();
+        }
+        if (found == null) {
+            return current;
+        }
+        return found.getObject();
+    }
+
+    /**
+     * Keeps the object bound to a name before it is changed, for the
+     * snapshots pinned before this change.
+     * Must be called while holding the {@link #writeLock}.
+     * @param name the atomic name
+     * @param obj the object bound before the change (null if the name was not bound)
+     * @param version the version of the change
+     */
+    private void remember(final String name, final Object obj, final long version) {
+        ConcurrentMap<String, BindingHistory> previousObjects = this.history;
+        if (previousObjects == null) {
+            previousObjects = new ConcurrentHashMap<String, BindingHistory>();
+            this.history = previousObjects;
+        }
+        previousObjects.put(name, new BindingHistory(obj, version, previousObjects.get(name)));
+    }
+
+    /**
+     * Records the update being applied to the bindings.
+     * Must be called while holding the {@link #writeLock}.
+     * @param version the version of the update, {@link #UNVERSIONED} or 0 once applied
+     */
+    void setApplying(final long version) {
+        this.applying = version;
+    }
+
+    /**
+     * @return true if previous objects are kept
+     */
+    boolean hasHistory() {
+        return this.history != null;
+    }
+
+    /**
+     * Drops the previous objects no longer needed by the pinned snapshots.
+     * Must be called while holding the {@link #writeLock}.
+     * @param oldest the oldest pinned version
+     */
+    void pruneHistory(final long oldest) {
+        ConcurrentMap<String, BindingHistory> previousObjects = this.history;
+        if (previousObjects == null || oldest <= this.prunedVersion) {
+            // nothing more to drop
+            return;
+        }
+        for (Map.Entry<String, BindingHistory> entry : previousObjects.entrySet()) {
+            BindingHistory kept = entry.getValue().keepAfter(oldest);
+            if (kept == null) {
+                previousObjects.remove(entry.getKey());
+            } else if (kept != entry.getValue()) {
+                previousObjects.put(entry.getKey(), kept);
+            }
+        }
+        this.prunedVersion = oldest;
+        if (previousObjects.isEmpty()) {
+            this.history = null;
+        }
+    }
+
+    /**
+     * Pins the current version of the bindings of all the contexts for the
+     * current thread, until the snapshot is closed.
+     * @return the snapshot
+     */
+    public static NamingSnapshot pinSnapshot() {
+        return Snapshots.pin();
+    }
+
+    /**
+     * Retrieves the named object from the wrapped context. The objects are
+     * taken from the cache of the wrapped context if it is enabled.
+     * @param name the name of the object in the wrapped context
+     * @param followLink if a terminal link has to be followed
+     * @return the object bound to name
+     * @throws NamingException if a naming exception is encountered
+     */
+    private Object lookupWrapped(final Name name, final boolean followLink) throws NamingException {
+        WrappedContextCache cache = this.wrappedCache;
+        if (cache == null || !followLink) {
+            return lookup(wrappedContext, name, followLink);
+        }
+        String key = name.toString();
+        Object obj = cache.get(key);
+        if (obj == null) {
+            obj = lookup(wrappedContext, name, true);
+            cache.put(key, obj);
+        }
+        return obj;
+    }
+
+    /**
+     * Remembers the given name as missing (if enabled) and builds the
+     * exception reporting it.
+     * @param name the name as given by the caller (may be null)
+     * @param version the value of the modifications counter before the lookup
+     * @param ctx the context where the name has not been found
+     * @param message the message of the exception
+     * @return the exception to throw
+     */
+    private NameNotFoundException missing(final String name, final long version, final ContextImpl ctx,
+            final String message) {
+        if (cacheMisses && name != null) {
+            // the entry is valid until the next modification
+            ConcurrentMap<String, Long> missing = this.missingNames;
+            if (missing == null) {
+                MISSING_NAMES.compareAndSet(this, null, new ConcurrentHashMap<String, Long>());
+                missing = this.missingNames;
+            } else if (missing.size() >= MAX_MISSING_NAMES) {
+                missing.clear();
             }
-            if (ret == null) {
-                throw new NamingException("Can not build an object with the reference '" + name + "'");
+            if (missing != null) {
+                missing.put(name, Long.valueOf(version));
             }
         }
-        return ret;
+        return ctx.nameNotFound(message);
+    }
+
+    /**
+     * Drops the names remembered as missing once a name is bound in this
+     * context. The names missing in a subcontext are invalidated by the
+     * modifications counter.
+     */
+    private void forgetMissingNames() {
+        ConcurrentMap<String, Long> missing = this.missingNames;
+        if (missing != null && !missing.isEmpty()) {
+            missing.clear();
+        }
+    }
 
+    /**
+     * Builds the exception thrown when a name is not found. It has no stack
+     * trace if {@link #STACKLESS_MISSES} is enabled.
+     * @param message the message of the exception
+     * @return the exception to throw
+     */
+    private NameNotFoundException nameNotFound(final String message) {
+        if (stacklessMisses) {
+            return new StacklessNameNotFoundException(message);
+        }
+        return new NameNotFoundException(message);
     }
 
     /**
@@ -195,8 +689,7 @@ public class ContextImpl implements Context {
      */
     @Override
     public void bind(final Name name, final Object obj) throws NamingException {
-        // Just use the string version for now.
-        bind(name.toString(), obj);
+        bind(components(name), obj);
     }
 
     /**
@@ -208,90 +701,237 @@ public class ContextImpl implements Context {
      */
     @Override
     public void bind(final String name, final Object obj) throws NamingException {
+        bind(parse(name), obj);
+    }
 
-        Name n = new CompositeName(name);
-        if (n.size() < 1) {
+    /**
+     * Binds a name to an object.
+     * @param segments the components of the name to bind; may not be empty
+     * @param obj the object to bind; possibly null
+     * @throws NamingException if a naming exception is encountered
+     */
+    private void bind(final String[] segments, final Object obj) throws NamingException {
+        if (segments.length < 1) {
             throw new InvalidNameException("CompNamingContext cannot bind empty name");
         }
-
-        if (n.size() == 1) {
-            if (wrappedContext != null) {
-                wrappedContext.bind(name, obj);
+        checkLastComponent(segments);
+
+        // walk the sub contexts in the env tree (they're created if they do not exist yet)
+        ContextImpl ctx = this;
+        int last = segments.length - 1;
+        for (int i = 0; i < last; i++) {
+            Context subctx = ctx.lookupOrCreateCtx(segments[i]);
+            if (!(subctx instanceof ContextImpl)) {
+                subctx.bind(suffix(segments, i + 1), obj);
                 return;
             }
-
-            // leaf in the env tree
-            if (this.bindings.get(name) != null) {
-                throw new NameAlreadyBoundException("CompNamingContext: Use rebind to bind over a name");
-            }
-            this.bindings.put(name, obj);
-        } else {
-            // sub context in the env tree
-            String suffix = n.getSuffix(1).toString();
-            // must create the subcontext first if it does not exist yet.
-            Context subctx;
-            try {
-                subctx = lookupCtx(n.get(0));
-            } catch (NameNotFoundException e) {
-                subctx = createSubcontext(n.get(0));
-            }
-            subctx.bind(suffix, obj);
+            ctx = (ContextImpl) subctx;
         }
+        ctx.bindLeaf(segments[last], obj);
     }
 
     /**
-     * Binds a name to an object, overwriting any existing binding.
-     * @param name the name to bind; may not be empty
-     * @param obj the object to bind; possibly null
+     * Binds all the given objects. The names are parsed and grouped by
+     * context first, then each context is updated in a single step while
+     * holding its lock. Missing subcontexts are fully populated before being
+     * bound so that their content is published at once.
+     * @param objects the objects to bind, by name
+     * @return the exceptions of the names that have not been bound (empty if all the names have been bound)
      * @throws NamingException if a naming exception is encountered
      */
     @Override
-    public void rebind(final Name name, final Object obj) throws NamingException {
-        // Just use the string version for now.
-        rebind(name.toString(), obj);
+    public Map<String, NamingException> bindAll(final Map<String, ?> objects) throws NamingException {
+        Map<String, NamingException> failures = new LinkedHashMap<String, NamingException>();
+        PendingBindings pendingBindings = new PendingBindings();
+        for (Map.Entry<String, ?> entry : objects.entrySet()) {
+            String name = entry.getKey();
+            try {
+                String[] segments = parse(name);
+                if (segments.length < 1) {
+                    throw new InvalidNameException("CompNamingContext cannot bind empty name");
+                }
+                checkLastComponent(segments);
+                pendingBindings.add(segments, name, entry.getValue());
+            } catch (NamingException e) {
+                failures.put(name, e);
+            }
+        }
+        bindAll(pendingBindings, failures);
+        return failures;
     }
 
     /**
-     * Binds a name to an object, overwriting any existing binding.
-     * @param name the name to bind; may not be empty
-     * @param obj the object to bind; possibly null
-     * @throws NamingException if a naming exception is encountered
-     * @see javax.naming.InvalidNameException
+     * Binds the given pending bindings in this context.
+     * @param pendingBindings the bindings of this context and of its subcontexts
+     * @param failures the exceptions of the names that can't be bound
      */
-    @Override
-    public void rebind(final String name, final Object obj) throws NamingException {
-        Name n = new CompositeName(name);
-        if (n.size() < 1) {
-            throw new InvalidNameException("CompNamingContext cannot rebind empty name");
+    private void bindAll(final PendingBindings pendingBindings, final Map<String, NamingException> failures) {
+        Map<ContextImpl, PendingBindings> subcontexts = null;
+        Map<Context, PendingBindings> otherContexts = null;
+        synchronized (writeLock) {
+            if (wrappedContext == null) {
+                for (Map.Entry<String, PendingBinding> entry : pendingBindings.getBindings().entrySet()) {
+                    String name = entry.getKey();
+                    PendingBinding pendingBinding = entry.getValue();
+                    if (isSealed()) {
+                        failures.put(pendingBinding.getName(), sealedException());
+                    } else if (this.bindings.get(name) != null) {
+                        failures.put(pendingBinding.getName(), new NameAlreadyBoundException(
+                                "CompNamingContext: Use rebind to bind over a name"));
+                    } else {
+                        putBinding(name, pendingBinding.getObject());
+                    }
+                }
+            }
+            for (Map.Entry<String, PendingBindings> entry : pendingBindings.getSubcontexts().entrySet()) {
+                String name = entry.getKey();
+                Object obj = this.bindings.get(name);
+                if (obj == null && isSealed()) {
+                    entry.getValue().fail(sealedException(), failures);
+                } else if (obj == null) {
+                    // new subcontext is filled before being visible
+                    ContextImpl ctx = new ContextImpl(this.id, this.environment, this);
+                    ctx.bindAll(entry.getValue(), failures);
+                    putBinding(name, ctx);
+                    ctx.fireContent();
+                } else if (obj instanceof ContextImpl) {
+                    if (subcontexts == null) {
+                        subcontexts = new LinkedHashMap<ContextImpl, PendingBindings>();
+                    }
+                    subcontexts.put((ContextImpl) obj, entry.getValue());
+                } else if (obj instanceof Context) {
+                    if (otherContexts == null) {
+                        otherContexts = new LinkedHashMap<Context, PendingBindings>();
+                    }
+                    otherContexts.put((Context) obj, entry.getValue());
+                } else {
+                    entry.getValue().fail(new NameAlreadyBoundException(name), failures);
+                }
+            }
         }
 
-        if (n.size() == 1) {
-            // leaf in the env tree
-            this.bindings.put(name, obj);
-        } else {
-            // sub context in the env tree
-            String suffix = n.getSuffix(1).toString();
-            // must create the subcontext first if it does not exist yet.
-            Context subctx;
-            try {
-                subctx = lookupCtx(n.get(0));
-            } catch (NameNotFoundException e) {
-                subctx = createSubcontext(n.get(0));
+        // Delegate
+        if (wrappedContext != null) {
+            forgetWrappedObjects();
+            for (PendingBinding pendingBinding : pendingBindings.getBindings().values()) {
+                bind(wrappedContext, new CompositeName(), pendingBinding, failures);
             }
-            subctx.rebind(suffix, obj);
         }
-    }
 
-    /**
-     * Unbinds the named object.
+        // Existing subcontexts are updated once this one is released
+        if (subcontexts != null) {
+            for (Map.Entry<ContextImpl, PendingBindings> entry : subcontexts.entrySet()) {
+                entry.getKey().bindAll(entry.getValue(), failures);
+            }
+        }
+        if (otherContexts != null) {
+            for (Map.Entry<Context, PendingBindings> entry : otherContexts.entrySet()) {
+                bindAll(entry.getKey(), new CompositeName(), entry.getValue(), failures);
+            }
+        }
+    }
+
+    /**
+     * Binds the given pending bindings one by one in a context which is not
+     * managed by this implementation.
+     * @param context the context to use
+     * @param prefix the name of the pending bindings relative to the context
+     * @param pendingBindings the bindings to bind
+     * @param failures the exceptions of the names that can't be bound
+     */
+    private static void bindAll(final Context context, final Name prefix, final PendingBindings pendingBindings,
+            final Map<String, NamingException> failures) {
+        for (PendingBinding pendingBinding : pendingBindings.getBindings().values()) {
+            bind(context, prefix, pendingBinding, failures);
+        }
+        for (Map.Entry<String, PendingBindings> entry : pendingBindings.getSubcontexts().entrySet()) {
+            Name name = (Name) prefix.clone();
+            try {
+                name.add(entry.getKey());
+            } catch (InvalidNameException e) {
+                entry.getValue().fail(e, failures);
+                continue;
+            }
+            bindAll(context, name, entry.getValue(), failures);
+        }
+    }
+
+    /**
+     * Binds a pending binding in a context which is not managed by this implementation.
+     * @param context the context to use
+     * @param prefix the name of the parent of the binding relative to the context
+     * @param pendingBinding the binding
+     * @param failures the exceptions of the names that can't be bound
+     */
+    private static void bind(final Context context, final Name prefix, final PendingBinding pendingBinding,
+            final Map<String, NamingException> failures) {
+        try {
+            Name name = (Name) prefix.clone();
+            name.add(pendingBinding.getSegment());
+            context.bind(name, pendingBinding.getObject());
+        } catch (NamingException e) {
+            failures.put(pendingBinding.getName(), e);
+        }
+    }
+
+    /**
+     * Binds a name to an object, overwriting any existing binding.
+     * @param name the name to bind; may not be empty
+     * @param obj the object to bind; possibly null
+     * @throws NamingException if a naming exception is encountered
+     */
+    @Override
+    public void rebind(final Name name, final Object obj) throws NamingException {
+        rebind(components(name), obj);
+    }
+
+    /**
+     * Binds a name to an object, overwriting any existing binding.
+     * @param name the name to bind; may not be empty
+     * @param obj the object to bind; possibly null
+     * @throws NamingException if a naming exception is encountered
+     * @see javax.naming.InvalidNameException
+     */
+    @Override
+    public void rebind(final String name, final Object obj) throws NamingException {
+        rebind(parse(name), obj);
+    }
+
+    /**
+     * Binds a name to an object, overwriting any existing binding.
+     * @param segments the components of the name to bind; may not be empty
+     * @param obj the object to bind; possibly null
+     * @throws NamingException if a naming exception is encountered
+     */
+    private void rebind(final String[] segments, final Object obj) throws NamingException {
+        if (segments.length < 1) {
+            throw new InvalidNameException("CompNamingContext cannot rebind empty name");
+        }
+        checkLastComponent(segments);
+
+        // walk the sub contexts in the env tree (they're created if they do not exist yet)
+        ContextImpl ctx = this;
+        int last = segments.length - 1;
+        for (int i = 0; i < last; i++) {
+            Context subctx = ctx.lookupOrCreateCtx(segments[i]);
+            if (!(subctx instanceof ContextImpl)) {
+                subctx.rebind(suffix(segments, i + 1), obj);
+                return;
+            }
+            ctx = (ContextImpl) subctx;
+        }
+        ctx.rebindLeaf(segments[last], obj);
+    }
+
+    /**
+     * Unbinds the named object.
      * @param name the name to unbind; may not be empty
      * @throws NamingException if a naming exception is encountered
      * @see javax.naming.NameNotFoundException
      */
     @Override
     public void unbind(final Name name) throws NamingException {
-        // Just use the string version for now.
-        unbind(name.toString());
+        unbind(components(name));
     }
 
     /**
@@ -303,53 +943,266 @@ public class ContextImpl implements Context {
      */
     @Override
     public void unbind(final String name) throws NamingException {
-        Name n = new CompositeName(name);
-        if (n.size() < 1) {
+        unbind(parse(name));
+    }
+
+    /**
+     * Unbinds the named object.
+     * @param segments the components of the name to unbind; may not be empty
+     * @throws NamingException if a naming exception is encountered
+     */
+    private void unbind(final String[] segments) throws NamingException {
+        if (segments.length < 1) {
             throw new InvalidNameException("CompNamingContext cannot unbind empty name");
         }
+        checkLastComponent(segments);
 
-        if (n.size() == 1) {
-            // leaf in the env tree
-            if (this.bindings.get(name) == null) {
-                throw new NameNotFoundException(name);
-            }
-            this.bindings.remove(name);
-        } else {
-            // sub context in the env tree
-            String suffix = n.getSuffix(1).toString();
+        // walk the sub contexts in the env tree
+        ContextImpl ctx = this;
+        int last = segments.length - 1;
+        for (int i = 0; i < last; i++) {
             // should throw exception if sub context not found!
-            Context subctx = lookupCtx(n.get(0));
-            subctx.unbind(suffix);
+            Context subctx = ctx.lookupCtx(segments[i]);
+            if (!(subctx instanceof ContextImpl)) {
+                subctx.unbind(suffix(segments, i + 1));
+                return;
+            }
+            ctx = (ContextImpl) subctx;
         }
+        ctx.unbindLeaf(segments[last]);
     }
 
     /**
      * Binds a new name to the object bound to an old name, and unbinds the old
-     * name.
+     * name. The raw binding is moved while holding the locks of both
+     * contexts. Within a context holding a few bindings, the move is a single
+     * update. Otherwise the new name is bound just before the old one is
+     * removed: a concurrent lookup never misses the object but it may find it
+     * with both names for a short time.
      * @param oldName the name of the existing binding; may not be empty
      * @param newName the name of the new binding; may not be empty
+     * @throws NameAlreadyBoundException if the new name is already bound
      * @throws NamingException if a naming exception is encountered
      */
     @Override
     public void rename(final Name oldName, final Name newName) throws NamingException {
-        // Just use the string version for now.
-        rename(oldName.toString(), newName.toString());
+        rename(components(oldName), components(newName));
     }
 
     /**
      * Binds a new name to the object bound to an old name, and unbinds the old
-     * name.
+     * name. The raw binding is moved while holding the locks of both
+     * contexts. Within a context holding a few bindings, the move is a single
+     * update. Otherwise the new name is bound just before the old one is
+     * removed: a concurrent lookup never misses the object but it may find it
+     * with both names for a short time.
      * @param oldName the name of the existing binding; may not be empty
      * @param newName the name of the new binding; may not be empty
+     * @throws NameAlreadyBoundException if the new name is already bound
      * @throws NamingException if a naming exception is encountered
      */
     @Override
     public void rename(final String oldName, final String newName) throws NamingException {
-        Object obj = lookup(oldName);
-        rebind(newName, obj);
+        rename(parse(oldName), parse(newName));
+    }
+
+    /**
+     * Binds a new name to the object bound to an old name, and unbinds the old
+     * name.
+     * @param oldName the components of the name of the existing binding; may not be empty
+     * @param newName the components of the name of the new binding; may not be empty
+     * @throws NamingException if a naming exception is encountered
+     */
+    private void rename(final String[] oldName, final String[] newName) throws NamingException {
+        if (oldName.length == 0 || newName.length == 0) {
+            throw new InvalidNameException("CompNamingContext: Cannot rename an empty name");
+        }
+        checkLastComponent(oldName);
+        checkLastComponent(newName);
+        if (newName.length > oldName.length && Arrays.equals(oldName, Arrays.copyOf(newName, oldName.length))) {
+            throw new InvalidNameException("CompNamingContext: Cannot move '" + suffix(oldName, 0)
+                    + "' into itself");
+        }
+
+        // walk the common part of the names once
+        ContextImpl ctx = this;
+        int common = 0;
+        int max = Math.min(oldName.length, newName.length) - 1;
+        while (common < max && oldName[common].equals(newName[common])) {
+            Context subctx = ctx.lookupCtx(oldName[common]);
+            if (!(subctx instanceof ContextImpl)) {
+                renameAcross(oldName, newName);
+                return;
+            }
+            ctx = (ContextImpl) subctx;
+            common++;
+        }
+
+        ContextImpl oldCtx = ctx.walk(oldName, common, false);
+        ContextImpl newCtx = null;
+        if (oldCtx != null) {
+            newCtx = ctx.walk(newName, common, true);
+        }
+        if (newCtx == null || !move(oldCtx, oldName[oldName.length - 1], newCtx, newName[newName.length - 1])) {
+            renameAcross(oldName, newName);
+        }
+    }
+
+    /**
+     * Renames by looking up the old name, binding the new name and unbinding
+     * the old name. Used when the names are not handled by the same tree.
+     * @param oldName the components of the name of the existing binding
+     * @param newName the components of the name of the new binding
+     * @throws NamingException if a naming exception is encountered
+     */
+    private void renameAcross(final String[] oldName, final String[] newName) throws NamingException {
+        Object obj = lookup(oldName, true, null);
+        bind(newName, obj);
         unbind(oldName);
     }
 
+    /**
+     * Walks the subcontexts of this context up to the context holding the
+     * last component of the given name.
+     * @param segments the components of the name
+     * @param from the position of the first component to use
+     * @param create if the missing subcontexts have to be created
+     * @return the context or null if the name goes through a foreign context
+     * @throws NamingException if a subcontext is not found
+     */
+    private ContextImpl walk(final String[] segments, final int from, final boolean create) throws NamingException {
+        ContextImpl ctx = this;
+        for (int i = from; i < segments.length - 1; i++) {
+            Context subctx;
+            if (create) {
+                subctx = ctx.lookupOrCreateCtx(segments[i]);
+            } else {
+                subctx = ctx.lookupCtx(segments[i]);
+            }
+            if (!(subctx instanceof ContextImpl)) {
+                return null;
+            }
+            ctx = (ContextImpl) subctx;
+        }
+        return ctx;
+    }
+
+    /**
+     * Moves the raw binding of a name to another name, while holding the
+     * locks of both contexts. References and links are not resolved.
+     * @param oldCtx the context holding the old name
+     * @param oldName the old atomic name
+     * @param newCtx the context holding the new name
+     * @param newName the new atomic name
+     * @return false if the old name is not bound locally and has to be found in a wrapped context
+     * @throws NamingException if the name is not found or if a context is sealed
+     */
+    private static boolean move(final ContextImpl oldCtx, final String oldName, final ContextImpl newCtx,
+            final String newName) throws NamingException {
+        if (oldCtx == newCtx) {
+            synchronized (oldCtx.writeLock) {
+                return oldCtx.moveBinding(oldName, newCtx, newName);
+            }
+        }
+        // always take the locks in the same order
+        int oldHash = System.identityHashCode(oldCtx);
+        int newHash = System.identityHashCode(newCtx);
+        Object first = oldCtx.writeLock;
+        Object second = newCtx.writeLock;
+        if (oldHash > newHash) {
+            first = newCtx.writeLock;
+            second = oldCtx.writeLock;
+        } else if (oldHash == newHash) {
+            synchronized (MOVE_LOCK) {
+                synchronized (first) {
+                    synchronized (second) {
+                        return oldCtx.moveBinding(oldName, newCtx, newName);
+                    }
+                }
+            }
+        }
+        synchronized (first) {
+            synchronized (second) {
+                return oldCtx.moveBinding(oldName, newCtx, newName);
+            }
+        }
+    }
+
+    /**
+     * Moves the binding of the given name to the given context.
+     * Must be called while holding the {@link #writeLock} of both contexts.
+     * Within a context, both names are changed by a single update, published
+     * at once to the lookups and the snapshots. Otherwise the new name is
+     * bound before the old one is removed, so that the object is never
+     * missing for a concurrent lookup.
+     * @param oldName the old atomic name
+     * @param newCtx the context holding the new name
+     * @param newName the new atomic name
+     * @return false if the old name is not bound locally and has to be found in a wrapped context
+     * @throws NamingException if the name is not found, if the new name is bound or if a context is sealed
+     */
+    private boolean moveBinding(final String oldName, final ContextImpl newCtx, final String newName)
+            throws NamingException {
+        checkNotSealed();
+        newCtx.checkNotSealed();
+        Object obj = this.bindings.get(oldName);
+        if (obj == null) {
+            if (wrappedContext != null) {
+                return false;
+            }
+            throw nameNotFound(oldName);
+        }
+        if (newCtx == this && oldName.equals(newName)) {
+            return true;
+        }
+        if (newCtx.bindings.get(newName) != null) {
+            throw new NameAlreadyBoundException("CompNamingContext: '" + newName + "' is already bound");
+        }
+        if (newCtx == this) {
+            // single update: both names change together for the lookups
+            long version = Snapshots.beginUpdate(this);
+            try {
+                if (version > 0) {
+                    remember(oldName, obj, version);
+                    remember(newName, null, version);
+                }
+                Map<String, Object> current = this.bindings;
+                if (current instanceof CompactBindings) {
+                    ((CompactBindings) current).rename(oldName, Segments.intern(newName));
+                } else {
+                    // published as a whole
+                    Map<String, Object> renamed = new ConcurrentHashMap<String, Object>(current);
+                    renamed.remove(oldName);
+                    renamed.put(Segments.intern(newName), obj);
+                    this.bindings = renamed;
+                }
+            } finally {
+                Snapshots.endUpdate(this, version);
+            }
+            NavigableSet<String> names = this.sortedNames;
+            if (names != null) {
+                names.remove(oldName);
+                names.add(Segments.intern(newName));
+            }
+            detach(oldName, obj);
+            attach(Segments.intern(newName), obj);
+            forgetResolvedObject(oldName);
+            forgetResolvedObject(newName);
+            forgetMissingNames();
+            if (obj instanceof Context) {
+                STRUCTURE.incrementAndGet(root);
+            }
+            MODIFICATIONS.incrementAndGet();
+            bindingChanged(oldName, null);
+            bindingChanged(newName, obj);
+            fire(NamingEvent.OBJECT_RENAMED, oldName, obj, newName, obj);
+            return true;
+        }
+        newCtx.putBinding(newName, obj);
+        removeBinding(oldName);
+        return true;
+    }
+
     /**
      * Enumerates the names bound in the named context, along with the class
      * names of objects bound to them. The contents of any subcontexts are not
@@ -362,8 +1215,7 @@ public class ContextImpl implements Context {
      */
     @Override
     public NamingEnumeration<NameClassPair> list(final Name name) throws NamingException {
-        // Just use the string version for now.
-        return list(name.toString());
+        return list(components(name));
     }
 
     /**
@@ -379,13 +1231,30 @@ public class ContextImpl implements Context {
     public NamingEnumeration<NameClassPair> list(final String name) throws NamingException {
         if (name.length() == 0) {
             // List this context
-            return new NamingEnumerationImpl(this.bindings);
+            return new NamingEnumerationImpl(snapshot());
+        }
+        return list(parse(name));
+    }
+
+    /**
+     * Enumerates the names bound in the named context, along with the class
+     * names of objects bound to them.
+     * @param segments the components of the name of the context to list
+     * @return an enumeration of the names and class names of the bindings in
+     *         this context. Each element of the enumeration is of type
+     *         NameClassPair.
+     * @throws NamingException if a naming exception is encountered
+     */
+    private NamingEnumeration<NameClassPair> list(final String[] segments) throws NamingException {
+        if (segments.length == 0) {
+            // List this context
+            return new NamingEnumerationImpl(snapshot());
         }
-        Object obj = lookup(name);
+        Object obj = lookup(segments, true, null);
         if (obj instanceof Context) {
             return ((Context) obj).list("");
         }
-        throw new NotContextException(name);
+        throw new NotContextException(suffix(segments, 0).toString());
     }
 
     /**
@@ -400,8 +1269,7 @@ public class ContextImpl implements Context {
      */
     @Override
     public NamingEnumeration<Binding> listBindings(final Name name) throws NamingException {
-        // Just use the string version for now.
-        return listBindings(name.toString());
+        return listBindings(components(name));
     }
 
     /**
@@ -417,37 +1285,171 @@ public class ContextImpl implements Context {
 
         if (name.length() == 0) {
             // List this context
-            return new BindingsImpl(this.bindings);
+            return new BindingsImpl(snapshot());
+        }
+        return listBindings(parse(name));
+    }
+
+    /**
+     * Enumerates the names bound in the named context, along with the objects
+     * bound to them.
+     * @param segments the components of the name of the context to list
+     * @return an enumeration of the bindings in this context. Each element of
+     *         the enumeration is of type Binding.
+     * @throws NamingException if a naming exception is encountered
+     */
+    private NamingEnumeration<Binding> listBindings(final String[] segments) throws NamingException {
+        if (segments.length == 0) {
+            // List this context
+            return new BindingsImpl(snapshot());
         }
-        Object obj = lookup(name);
+        Object obj = lookup(segments, true, null);
         if (obj instanceof Context) {
             return ((Context) obj).listBindings("");
         }
+        throw new NotContextException(suffix(segments, 0).toString());
+    }
+
+    /**
+     * Lists a page of the bindings of the named context, ordered by name. The
+     * cursor is the name of the last binding of the previous page.
+     * @param name the name of the context to list
+     * @param cursor the cursor returned with the previous page or null for the first page
+     * @param pageSize the maximum number of bindings of the page
+     * @param prefix only the names starting with this prefix are listed (null for all the names)
+     * @return the page of bindings
+     * @throws NamingException if a naming exception is encountered
+     */
+    @Override
+    public BindingsPage listBindings(final String name, final String cursor, final int pageSize,
+            final String prefix) throws NamingException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Invalid page size '" + pageSize + "'");
+        }
+        Object obj = this;
+        if (name.length() > 0) {
+            obj = lookup(parse(name), true, name);
+        }
+        if (obj instanceof ContextImpl) {
+            return ((ContextImpl) obj).listBindingsPage(cursor, pageSize, prefix);
+        }
+        if (obj instanceof PagedContext) {
+            return ((PagedContext) obj).listBindings("", cursor, pageSize, prefix);
+        }
+        if (obj instanceof Context) {
+            throw new OperationNotSupportedException("CompNamingContext: paged listing of '" + name + "'");
+        }
         throw new NotContextException(name);
+    }
+
+    /**
+     * Lists a page of the bindings of this context.
+     * @param cursor the name of the last binding of the previous page or null for the first page
+     * @param pageSize the maximum number of bindings of the page
+     * @param prefix only the names starting with this prefix are listed (null for all the names)
+     * @return the page of bindings
+     */
+    private BindingsPage listBindingsPage(final String cursor, final int pageSize, final String prefix) {
+        NavigableSet<String> names = sortedNames();
+
+        // Start after the cursor and not before the first name with the prefix
+        NavigableSet<String> remaining = names;
+        if (prefix != null && (cursor == null || prefix.compareTo(cursor) > 0)) {
+            remaining = names.tailSet(prefix, true);
+        } else if (cursor != null) {
+            remaining = names.tailSet(cursor, false);
+        }
+
+        List<Binding> page = new ArrayList<Binding>();
+        String last = null;
+        String nextCursor = null;
+        Iterator<String> iterator = remaining.iterator();
+        while (iterator.hasNext()) {
+            String bindingName = iterator.next();
+            if (prefix != null && !bindingName.startsWith(prefix)) {
+                break;
+            }
+            if (page.size() == pageSize) {
+                // another page as there are remaining names
+                nextCursor = last;
+                break;
+            }
+            // names removed while iterating are skipped
+            Object obj = this.bindings.get(bindingName);
+            if (obj != null) {
+                page.add(new Binding(bindingName, obj));
+            }
+            last = bindingName;
+        }
+        return new BindingsPageImpl(page, nextCursor);
+    }
 
+    /**
+     * Gets the names of the bindings sorted in natural order. The index is
+     * built once, then the updates add or remove their name.
+     * @return the sorted names (must not be modified)
+     */
+    private NavigableSet<String> sortedNames() {
+        NavigableSet<String> names = this.sortedNames;
+        if (names == null) {
+            synchronized (writeLock) {
+                names = this.sortedNames;
+                if (names == null) {
+                    names = new ConcurrentSkipListSet<String>(this.bindings.keySet());
+                    this.sortedNames = names;
+                }
+            }
+        }
+        return names;
     }
 
     /**
-     * Destroys the named context and removes it from the namespace. Not
-     * supported yet.
+     * Destroys the named context and removes it from the namespace.
      * @param name the name of the context to be destroyed; may not be empty
      * @throws NamingException if a naming exception is encountered
      */
     @Override
     public void destroySubcontext(final Name name) throws NamingException {
-        // Just use the string version for now.
-        destroySubcontext(name.toString());
+        destroySubcontext(components(name));
     }
 
     /**
-     * Destroys the named context and removes it from the namespace. Not
-     * supported yet.
+     * Destroys the named context and removes it from the namespace. The
+     * context is detached at once, then all its bindings (and the bindings of
+     * the subcontexts it has created) are released. The objects built from
+     * references that are {@link AutoCloseable} or {@link Context} are closed.
      * @param name the name of the context to be destroyed; may not be empty
      * @throws NamingException if a naming exception is encountered
      */
     @Override
     public void destroySubcontext(final String name) throws NamingException {
-        throw new OperationNotSupportedException("CompNamingContext: destroySubcontext");
+        destroySubcontext(parse(name));
+    }
+
+    /**
+     * Destroys the named context and removes it from the namespace.
+     * @param segments the components of the name of the context to be destroyed; may not be empty
+     * @throws NamingException if a naming exception is encountered
+     */
+    private void destroySubcontext(final String[] segments) throws NamingException {
+        if (segments.length < 1) {
+            throw new InvalidNameException("CompNamingContext cannot destroy empty name");
+        }
+        checkLastComponent(segments);
+
+        // walk the sub contexts in the env tree
+        ContextImpl ctx = this;
+        int last = segments.length - 1;
+        for (int i = 0; i < last; i++) {
+            // should throw exception if sub context not found!
+            Context subctx = ctx.lookupCtx(segments[i]);
+            if (!(subctx instanceof ContextImpl)) {
+                subctx.destroySubcontext(suffix(segments, i + 1));
+                return;
+            }
+            ctx = (ContextImpl) subctx;
+        }
+        ctx.destroySubcontextLeaf(segments[last]);
     }
 
     /**
@@ -460,8 +1462,7 @@ public class ContextImpl implements Context {
      */
     @Override
     public Context createSubcontext(final Name name) throws NamingException {
-        // Just use the string version for now.
-        return createSubcontext(name.toString());
+        return createSubcontext(components(name));
     }
 
     /**
@@ -473,31 +1474,33 @@ public class ContextImpl implements Context {
      */
     @Override
     public Context createSubcontext(final String name) throws NamingException {
+        return createSubcontext(parse(name));
+    }
 
-        Name n = new CompositeName(name);
-        if (n.size() < 1) {
+    /**
+     * Creates and binds a new context.
+     * @param segments the components of the name of the context to create; may not be empty
+     * @return the newly created context
+     * @throws NamingException if a naming exception is encountered
+     */
+    private Context createSubcontext(final String[] segments) throws NamingException {
+        if (segments.length < 1) {
             throw new InvalidNameException("CompNamingContext cannot create empty Subcontext");
         }
-
-        Context ctx = null; // returned ctx
-        if (n.size() == 1) {
-            // leaf in the env tree: create ctx and bind it in parent.
-            ctx = new ContextImpl(this.id, this.environment);
-            this.bindings.put(name, ctx);
-        } else {
-            // as for bind, we must create first all the subcontexts
-            // if they don't exist yet.
-            String suffix = n.getSuffix(1).toString();
-            Context subctx;
-            String newName = n.get(0);
-            try {
-                subctx = lookupCtx(newName);
-            } catch (NameNotFoundException e) {
-                subctx = createSubcontext(newName);
+        checkLastComponent(segments);
+
+        // as for bind, we must create first all the subcontexts
+        // if they don't exist yet.
+        ContextImpl ctx = this;
+        int last = segments.length - 1;
+        for (int i = 0; i < last; i++) {
+            Context subctx = ctx.lookupOrCreateCtx(segments[i]);
+            if (!(subctx instanceof ContextImpl)) {
+                return subctx.createSubcontext(suffix(segments, i + 1));
             }
-            ctx = subctx.createSubcontext(suffix);
+            ctx = (ContextImpl) subctx;
         }
-        return ctx;
+        return ctx.createSubcontextLeaf(segments[last]);
     }
 
     /**
@@ -511,8 +1514,11 @@ public class ContextImpl implements Context {
      */
     @Override
     public Object lookupLink(final Name name) throws NamingException {
-        // Just use the string version for now.
-        return lookupLink(name.toString());
+        // Delegate
+        if (wrappedContext != null && wrapAllOperations) {
+            return wrappedContext.lookupLink(name);
+        }
+        return lookup(components(name), false, null);
     }
 
     /**
@@ -526,7 +1532,11 @@ public class ContextImpl implements Context {
      */
     @Override
     public Object lookupLink(final String name) throws NamingException {
-        return lookup(name);
+        // Delegate
+        if (wrappedContext != null && wrapAllOperations) {
+            return wrappedContext.lookupLink(name);
+        }
+        return lookup(parse(name), false, name);
     }
 
     /**
@@ -590,7 +1600,15 @@ public class ContextImpl implements Context {
      */
     @Override
     public Object addToEnvironment(final String propName, final Object propVal) throws NamingException {
-        return this.environment.put(propName, propVal);
+        synchronized (writeLock) {
+            checkNotSealed();
+            // copy on write as the environment is shared
+            Hashtable<Object, Object> env = new Hashtable<Object, Object>(this.environment);
+            Object previous = env.put(propName, propVal);
+            this.environment = env;
+            readEnvironment();
+            return previous;
+        }
     }
 
     /**
@@ -603,21 +1621,60 @@ public class ContextImpl implements Context {
      */
     @Override
     public Object removeFromEnvironment(final String propName) throws NamingException {
+        synchronized (writeLock) {
+            if (this.environment == null || !this.environment.containsKey(propName)) {
+                return null;
+            }
+            checkNotSealed();
+            // copy on write as the environment is shared
+            Hashtable<Object, Object> env = new Hashtable<Object, Object>(this.environment);
+            Object previous = env.remove(propName);
+            this.environment = env;
+            readEnvironment();
+            return previous;
+        }
+    }
 
-        if (this.environment == null) {
-            return null;
+    /**
+     * Reads the properties of the environment changing the behavior of this context.
+     */
+    private void readEnvironment() {
+        Hashtable<Object, Object> env = this.environment;
+        this.cacheReferences = isEnabled(env, CACHE_REFERENCES);
+        this.cacheLinks = isEnabled(env, CACHE_LINKS);
+        this.cacheMisses = isEnabled(env, CACHE_MISSES);
+        this.stacklessMisses = isEnabled(env, STACKLESS_MISSES);
+        if (!this.cacheMisses) {
+            this.missingNames = null;
         }
-        return this.environment.remove(propName);
     }
 
     /**
-     * Retrieves the environment in effect for this context.
+     * Checks if a property of the environment is set to true.
+     * @param env the environment
+     * @param propName the name of the property
+     * @return true if the property is set to true
+     */
+    private static boolean isEnabled(final Hashtable<Object, Object> env, final String propName) {
+        return Boolean.parseBoolean(String.valueOf(env.get(propName)));
+    }
+
+    /**
+     * Retrieves the environment in effect for this context. The returned
+     * table is a copy: the environment is shared with other contexts and the
+     * behavior of this context is read from it when it is set, so it is only
+     * changed by addToEnvironment() and removeFromEnvironment().
      * @return the environment of this context; never null
      * @throws NamingException if a naming exception is encountered
      */
     @Override
     public Hashtable<?, ?> getEnvironment() throws NamingException {
-        return this.environment;
+        Hashtable<Object, Object> env = this.environment;
+        if (env == null) {
+            // closed
+            return new Hashtable<Object, Object>();
+        }
+        return new Hashtable<Object, Object>(env);
     }
 
     /**
@@ -627,6 +1684,17 @@ public class ContextImpl implements Context {
     @Override
     public void close() throws NamingException {
         this.environment = null;
+        Context ctx = this.linkContext;
+        if (ctx != null) {
+            this.linkContext = null;
+            ctx.close();
+        }
+        List<ListenerRegistration> registered = this.registrations;
+        if (registered != null) {
+            for (ListenerRegistration registration : registered) {
+                removeRegistration(registration);
+            }
+        }
     }
 
     /**
@@ -639,48 +1707,1079 @@ public class ContextImpl implements Context {
         return this.id;
     }
 
-    // ------------------------------------------------------------------
-    // Private Methods
-    // ------------------------------------------------------------------
+    /**
+     * Adds a listener for receiving naming events fired when the object(s)
+     * identified by a target and scope changes.
+     * @param target the name of the object to listen to, relative to this context
+     * @param scope the scope (object, one level or subtree)
+     * @param listener the listener to notify
+     * @throws NamingException if the target is not found
+     */
+    @Override
+    public void addNamingListener(final Name target, final int scope, final NamingListener listener)
+            throws NamingException {
+        addNamingListener(components(target), scope, listener);
+    }
 
     /**
-     * Allow to add a binding in order to enhance the current context.
-     * @param bindingName the name of the binding
-     * @param context the context to add for this binding
+     * Adds a listener for receiving naming events fired when the object(s)
+     * identified by a target and scope changes.
+     * @param target the name of the object to listen to, relative to this context
+     * @param scope the scope (object, one level or subtree)
+     * @param listener the listener to notify
+     * @throws NamingException if the target is not found
      */
-    public void addBinding(final String bindingName, final Context context) {
-        if (this.bindings.get(bindingName) != null) {
-            throw new IllegalStateException("Binding named '" + bindingName + "' already exists.");
-        }
-        this.bindings.put(bindingName, context);
+    @Override
+    public void addNamingListener(final String target, final int scope, final NamingListener listener)
+            throws NamingException {
+        addNamingListener(parse(target), scope, listener);
     }
 
     /**
-     * Find if this name is a sub context.
-     * @param name the sub context name
-     * @return the named Context
-     * @throws NamingException When nam?ing fails
-     * @see javax.naming.NameNotFoundException
-     * @see javax.naming.NameAlreadyBoundException
+     * Adds a listener for receiving naming events.
+     * @param segments the components of the name of the target
+     * @param scope the scope (object, one level or subtree)
+     * @param listener the listener to notify
+     * @throws NamingException if the target is not found
      */
-    private Context lookupCtx(final String name) throws NamingException {
-        Object obj = this.bindings.get(name);
-        if (obj == null) {
-            throw new NameNotFoundException("No subcontext named '" + name + "' has been found");
+    private void addNamingListener(final String[] segments, final int scope, final NamingListener listener)
+            throws NamingException {
+        if (scope != OBJECT_SCOPE && scope != ONELEVEL_SCOPE && scope != SUBTREE_SCOPE) {
+            throw new NamingException("CompNamingContext: Invalid scope '" + scope + "'");
         }
-        if (obj instanceof Context) {
-            return (Context) obj;
+        // the object scope is registered on the context holding the target
+        int length = segments.length;
+        if (scope == OBJECT_SCOPE && length > 0) {
+            length--;
+        }
+        ContextImpl ctx = this;
+        for (int i = 0; i < length; i++) {
+            Context subctx = ctx.lookupCtx(segments[i]);
+            if (!(subctx instanceof ContextImpl)) {
+                if (subctx instanceof EventContext) {
+                    ((EventContext) subctx).addNamingListener(suffix(segments, i + 1), scope, listener);
+                    return;
+                }
+                throw new OperationNotSupportedException("CompNamingContext: Context '" + segments[i]
+                        + "' doesn't support events");
+            }
+            ctx = (ContextImpl) subctx;
+        }
+        String leaf = null;
+        if (scope == OBJECT_SCOPE) {
+            leaf = "";
+            if (length < segments.length) {
+                leaf = segments[length];
+                if (ctx.bindings.get(leaf) == null) {
+                    throw nameNotFound(leaf);
+                }
+            }
         }
-        throw new NameAlreadyBoundException(name);
-    }
 
+        ListenerRegistration registration = new ListenerRegistration(this, ctx, suffix(segments, 0), leaf, scope,
+                listener);
+        synchronized (ctx.writeLock) {
+            if (ctx.listeners == null) {
+                ctx.listeners = new CopyOnWriteArrayList<ListenerRegistration>();
+            }
+            ctx.listeners.add(registration);
+        }
+        synchronized (writeLock) {
+            if (this.registrations == null) {
+                this.registrations = new CopyOnWriteArrayList<ListenerRegistration>();
+            }
+            this.registrations.add(registration);
+        }
+        if (scope == SUBTREE_SCOPE) {
+            SUBTREE_LISTENERS.incrementAndGet(ctx.root);
+        }
+    }
 
     /**
-     * Allow to wrap a given context for delegating lookup operations.
-     * @param wrappedContext the context that will be wrapped
+     * Removes a listener from receiving naming events fired by this context.
+     * @param listener the listener to remove
+     * @throws NamingException if a naming exception is encountered
      */
-    public void addWrapped(final Context wrappedContext) {
-        addWrapped(wrappedContext, false);
+    @Override
+    public void removeNamingListener(final NamingListener listener) throws NamingException {
+        List<ListenerRegistration> registered = this.registrations;
+        if (registered == null) {
+            return;
+        }
+        for (ListenerRegistration registration : registered) {
+            if (registration.getListener() == listener) {
+                removeRegistration(registration);
+            }
+        }
+    }
+
+    /**
+     * Removes the given registration of a listener.
+     * @param registration the registration made by using this context
+     */
+    private void removeRegistration(final ListenerRegistration registration) {
+        ContextImpl holder = registration.getHolder();
+        boolean removed = false;
+        synchronized (holder.writeLock) {
+            List<ListenerRegistration> held = holder.listeners;
+            if (held != null) {
+                removed = held.remove(registration);
+            }
+        }
+        synchronized (writeLock) {
+            this.registrations.remove(registration);
+        }
+        if (removed && registration.getScope() == SUBTREE_SCOPE) {
+            SUBTREE_LISTENERS.decrementAndGet(holder.root);
+        }
+    }
+
+    /**
+     * The targets of the listeners must exist when they are registered.
+     * @return true
+     */
+    @Override
+    public boolean targetMustExist() {
+        return true;
+    }
+
+    // ------------------------------------------------------------------
+    // Private Methods
+    // ------------------------------------------------------------------
+
+    /**
+     * Allow to add a binding in order to enhance the current context.
+     * @param bindingName the name of the binding
+     * @param context the context to add for this binding
+     */
+    public void addBinding(final String bindingName, final Context context) {
+        synchronized (writeLock) {
+            if (isSealed()) {
+                throw new IllegalStateException("Context '" + id + "' is sealed.");
+            }
+            if (this.bindings.get(bindingName) != null) {
+                throw new IllegalStateException("Binding named '" + bindingName + "' already exists.");
+            }
+            putBinding(bindingName, context);
+        }
+    }
+
+    /**
+     * Seals this context and the subcontexts it has created. The bindings are
+     * copied into an immutable structure and any further modification fails.
+     * Contexts bound from elsewhere (like the module or app contexts) are not
+     * sealed.
+     */
+    @Override
+    public void seal() {
+        List<ContextImpl> subcontexts = new ArrayList<ContextImpl>();
+        synchronized (writeLock) {
+            if (!isSealed()) {
+                this.bindings = new SealedBindings(this.bindings);
+            }
+            for (Object obj : this.bindings.values()) {
+                if (obj instanceof ContextImpl && ((ContextImpl) obj).parent == this) {
+                    subcontexts.add((ContextImpl) obj);
+                }
+            }
+        }
+        for (ContextImpl subcontext : subcontexts) {
+            subcontext.seal();
+        }
+    }
+
+    /**
+     * @return true if this context has been sealed
+     */
+    @Override
+    public boolean isSealed() {
+        return this.bindings instanceof SealedBindings;
+    }
+
+    /**
+     * Checks that the context can be modified.
+     * @throws OperationNotSupportedException if the context is sealed
+     */
+    private void checkNotSealed() throws OperationNotSupportedException {
+        if (isSealed()) {
+            throw sealedException();
+        }
+    }
+
+    /**
+     * @return the exception thrown when a sealed context is modified
+     */
+    private OperationNotSupportedException sealedException() {
+        return new OperationNotSupportedException("CompNamingContext: context '" + id + "' is sealed");
+    }
+
+    /**
+     * Sets the binding of the given name. As a concurrent map doesn't accept
+     * null values, binding a null object is removing the name (a null binding
+     * was already handled as a missing name).
+     * Must be called while holding the {@link #writeLock}.
+     * @param name the name of the binding
+     * @param obj the object to bind; possibly null
+     */
+    private void putBinding(final String name, final Object obj) {
+        putBinding(name, obj, true);
+    }
+
+    /**
+     * Sets the binding of the given name.
+     * Must be called while holding the {@link #writeLock}.
+     * @param name the name of the binding
+     * @param obj the object to bind; possibly null
+     * @param notify if the listeners have to be notified
+     */
+    private void putBinding(final String name, final Object obj, final boolean notify) {
+        if (obj == null) {
+            removeBinding(name, notify);
+        } else {
+            Map<String, Object> current = this.bindings;
+            if (current instanceof CompactBindings && ((CompactBindings) current).isFull()
+                    && !current.containsKey(name)) {
+                // too many bindings for the compact form
+                current = new ConcurrentHashMap<String, Object>(current);
+                this.bindings = current;
+            }
+            Object previous;
+            String key = Segments.intern(name);
+            long version = Snapshots.beginUpdate(this);
+            try {
+                if (version > 0) {
+                    remember(name, current.get(name), version);
+                }
+                previous = current.put(key, obj);
+            } finally {
+                Snapshots.endUpdate(this, version);
+            }
+            NavigableSet<String> names = this.sortedNames;
+            if (previous == null && names != null) {
+                names.add(key);
+            }
+            if (previous != obj) {
+                detach(name, previous);
+                attach(key, obj);
+            }
+            if (obj instanceof Context || previous instanceof Context) {
+                STRUCTURE.incrementAndGet(root);
+            }
+            forgetResolvedObject(name);
+            forgetMissingNames();
+            MODIFICATIONS.incrementAndGet();
+            bindingChanged(name, obj);
+            if (notify) {
+                if (previous == null) {
+                    fire(NamingEvent.OBJECT_ADDED, null, null, name, obj);
+                } else {
+                    fire(NamingEvent.OBJECT_CHANGED, name, previous, name, obj);
+                }
+            }
+        }
+    }
+
+    /**
+     * Called when the object bound to a name of this context has changed.
+     * It is called while holding the lock serializing the updates, so
+     * subclasses can maintain their own view of some bindings.
+     * @param name the atomic name
+     * @param obj the new object or null if the name has been unbound
+     */
+    protected void bindingChanged(final String name, final Object obj) {
+    }
+
+    /**
+     * Takes a point-in-time snapshot of the bindings of this context. As the
+     * updates are serialized, the copy done while holding the
+     * {@link #writeLock} can't see a partial update. Lookups are not blocked.
+     * @return the bindings of this context
+     */
+    private List<Map.Entry<String, Object>> snapshot() {
+        Map<String, Object> current = this.bindings;
+        if (current instanceof SealedBindings) {
+            // immutable
+            return ((SealedBindings) current).getEntries();
+        }
+        synchronized (writeLock) {
+            return new ArrayList<Map.Entry<String, Object>>(this.bindings.entrySet());
+        }
+    }
+
+    /**
+     * Removes the binding of the given name.
+     * Must be called while holding the {@link #writeLock}.
+     * @param name the name of the binding
+     * @return the object that was bound or null if there was no binding
+     */
+    private Object removeBinding(final String name) {
+        return removeBinding(name, true);
+    }
+
+    /**
+     * Removes the binding of the given name.
+     * Must be called while holding the {@link #writeLock}.
+     * @param name the name of the binding
+     * @param notify if the listeners have to be notified
+     * @return the object that was bound or null if there was no binding
+     */
+    private Object removeBinding(final String name, final boolean notify) {
+        Object previous;
+        long version = Snapshots.beginUpdate(this);
+        try {
+            if (version > 0) {
+                Object obj = this.bindings.get(name);
+                if (obj != null) {
+                    remember(name, obj, version);
+                }
+            }
+            previous = this.bindings.remove(name);
+        } finally {
+            Snapshots.endUpdate(this, version);
+        }
+        NavigableSet<String> names = this.sortedNames;
+        if (previous != null && names != null) {
+            names.remove(name);
+        }
+        detach(name, previous);
+        if (previous instanceof Context) {
+            STRUCTURE.incrementAndGet(root);
+        }
+        forgetResolvedObject(name);
+        MODIFICATIONS.incrementAndGet();
+        if (previous != null) {
+            bindingChanged(name, null);
+            if (notify) {
+                fire(NamingEvent.OBJECT_REMOVED, name, previous, null, null);
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Records the name of a subcontext created by this context once it is bound.
+     * @param name the atomic name
+     * @param obj the bound object
+     */
+    private void attach(final String name, final Object obj) {
+        if (obj instanceof ContextImpl && ((ContextImpl) obj).parent == this) {
+            ((ContextImpl) obj).nameInParent = name;
+        }
+    }
+
+    /**
+     * Forgets the name of a subcontext created by this context once it is unbound.
+     * @param name the atomic name
+     * @param obj the object that was bound
+     */
+    private void detach(final String name, final Object obj) {
+        if (obj instanceof ContextImpl && ((ContextImpl) obj).parent == this
+                && name.equals(((ContextImpl) obj).nameInParent)) {
+            ((ContextImpl) obj).nameInParent = null;
+        }
+    }
+
+    /**
+     * Queues the event of a change of this context for the interested
+     * listeners: the ones registered on this context and the ones registered
+     * with the subtree scope on its parents. The parents are found through
+     * the names recorded when the subcontexts were bound, so the cost only
+     * depends on the depth. The listeners are notified asynchronously once
+     * an event executor is set (see {@link #setEventExecutor(Executor)}).
+     * Must be called while holding the {@link #writeLock}.
+     * @param type the type of the event (see {@link NamingEvent})
+     * @param oldName the old atomic name (null for an added object)
+     * @param oldObject the old object (null for an added object)
+     * @param newName the new atomic name (null for a removed object)
+     * @param newObject the new object (null for a removed object)
+     */
+    private void fire(final int type, final String oldName, final Object oldObject, final String newName,
+            final Object newObject) {
+        boolean subtree = root.subtreeListeners > 0;
+        if (this.listeners == null && !subtree) {
+            return;
+        }
+        ContextImpl ctx = this;
+        List<String> path = new ArrayList<String>();
+        while (true) {
+            List<ListenerRegistration> registrations = ctx.listeners;
+            if (registrations != null) {
+                String[] segments = null;
+                for (ListenerRegistration registration : registrations) {
+                    if (ctx == this && registration.matches(oldName, newName)
+                            || registration.getScope() == EventContext.SUBTREE_SCOPE) {
+                        if (segments == null) {
+                            segments = new String[path.size()];
+                            for (int i = 0; i < segments.length; i++) {
+                                segments[i] = path.get(segments.length - 1 - i);
+                            }
+                        }
+                        EventDispatcher.post(registration, type, segments, oldName, oldObject, newName, newObject);
+                    }
+                }
+            }
+            String name = ctx.nameInParent;
+            if (!subtree || ctx.parent == null || name == null) {
+                // no longer bound in its parent
+                return;
+            }
+            path.add(name);
+            ctx = ctx.parent;
+        }
+    }
+
+    /**
+     * Queues the events of the bindings of a subcontext that has been filled
+     * before being bound, for the subtree listeners of its parents.
+     * Must be called while holding the {@link #writeLock} of its parent.
+     */
+    private void fireContent() {
+        if (root.subtreeListeners == 0) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : this.bindings.entrySet()) {
+            Object obj = entry.getValue();
+            fire(NamingEvent.OBJECT_ADDED, null, null, entry.getKey(), obj);
+            if (obj instanceof ContextImpl && ((ContextImpl) obj).parent == this) {
+                ((ContextImpl) obj).fireContent();
+            }
+        }
+    }
+
+    /**
+     * Retrieves the named object from another context.
+     * @param context the context to use
+     * @param name the name of the object to look up
+     * @param followLink if a terminal link has to be followed
+     * @return the object bound to name
+     * @throws NamingException if a naming exception is encountered
+     */
+    private static Object lookup(final Context context, final Name name, final boolean followLink)
+            throws NamingException {
+        if (followLink) {
+            return context.lookup(name);
+        }
+        return context.lookupLink(name);
+    }
+
+    /**
+     * Gets the object to return for the given binding of this context. Links
+     * and references are resolved.
+     * @param name the atomic name of the binding
+     * @param ret the bound object
+     * @param followLink if a terminal link has to be followed
+     * @return the object bound to name
+     * @throws NamingException if a naming exception is encountered
+     */
+    private Object resolve(final String name, final Object ret, final boolean followLink) throws NamingException {
+        if (ret instanceof LinkRef) {
+            if (!followLink) {
+                return ret;
+            }
+            if (!cacheLinks) {
+                return resolveLink((LinkRef) ret);
+            }
+            // Reuse the target of this link if nothing has been rebound since
+            long version = MODIFICATIONS.get();
+            ConcurrentMap<String, ResolvedObject> targets = this.linkTargets;
+            if (targets != null) {
+                ResolvedObject resolvedObject = targets.get(name);
+                if (resolvedObject != null && resolvedObject.getBinding() == ret
+                        && resolvedObject.getVersion() == version) {
+                    return resolvedObject.getInstance();
+                }
+            }
+            Object target = resolveLink((LinkRef) ret);
+            synchronized (writeLock) {
+                // only keep it if the binding is still the same
+                if (this.bindings.get(name) == ret) {
+                    if (this.linkTargets == null) {
+                        this.linkTargets = new ConcurrentHashMap<>();
+                    }
+                    this.linkTargets.put(name, new ResolvedObject(ret, target, version));
+                }
+            }
+            return target;
+        } else if (ret instanceof Reference || ret instanceof Referenceable) {
+            if (!cacheReferences) {
+                return getObjectInstance(name, ret);
+            }
+            // Reuse the object built for this binding if it has not been rebound since
+            ConcurrentMap<String, ResolvedObject> resolved = this.resolvedObjects;
+            if (resolved != null) {
+                ResolvedObject resolvedObject = resolved.get(name);
+                if (resolvedObject != null && resolvedObject.getBinding() == ret) {
+                    return resolvedObject.getInstance();
+                }
+            }
+            Object instance = getObjectInstance(name, ret);
+            if (isShareable(ret)) {
+                synchronized (writeLock) {
+                    // only keep it if the binding is still the same
+                    if (this.bindings.get(name) == ret) {
+                        if (this.resolvedObjects == null) {
+                            this.resolvedObjects = new ConcurrentHashMap<>();
+                        }
+                        this.resolvedObjects.put(name, new ResolvedObject(ret, instance, 0L));
+                    }
+                }
+            }
+            return instance;
+        }
+        return ret;
+    }
+
+    /**
+     * Retrieves the object targeted by the given link. The name hidden in the
+     * link is in the initial context. Links to other links are followed until
+     * an object is found.
+     * @param link the link to resolve
+     * @return the linked object
+     * @throws NamingException if the link can't be resolved or if there is a cycle
+     */
+    private Object resolveLink(final LinkRef link) throws NamingException {
+        // Handle special case of the LinkRef since I think
+        // it's not handled by std NamingManager.getObjectInstance().
+        try {
+            Context linkContext = getLinkContext();
+            String linkName = link.getLinkName();
+            Object obj = linkContext.lookupLink(linkName);
+            Set<String> visitedNames = null;
+            while (obj instanceof LinkRef) {
+                if (visitedNames == null) {
+                    visitedNames = new HashSet<>();
+                    visitedNames.add(linkName);
+                }
+                linkName = ((LinkRef) obj).getLinkName();
+                if (!visitedNames.add(linkName)) {
+                    throw new NamingException("Cycle detected in the links to '" + linkName + "'");
+                }
+                obj = linkContext.lookupLink(linkName);
+            }
+            return obj;
+        } catch (Exception e) {
+            NamingException ne = new NamingException(e.getMessage());
+            ne.setRootCause(e);
+            throw ne;
+        }
+    }
+
+    /**
+     * Gets the context used to resolve the links. It is created only once.
+     * @return the initial context
+     * @throws NamingException if the initial context can't be created
+     */
+    private Context getLinkContext() throws NamingException {
+        Context ctx = this.linkContext;
+        if (ctx == null) {
+            synchronized (writeLock) {
+                ctx = this.linkContext;
+                if (ctx == null) {
+                    ctx = new InitialContext();
+                    this.linkContext = ctx;
+                }
+            }
+        }
+        return ctx;
+    }
+
+    /**
+     * Builds an object from the given reference by using the NamingManager.
+     * @param name the atomic name of the binding
+     * @param reference a {@link Reference} or {@link Referenceable} object
+     * @return the object that has been built
+     * @throws NamingException if the object can't be built
+     */
+    private Object getObjectInstance(final String name, final Object reference) throws NamingException {
+        Object ret;
+        try {
+            ret = javax.naming.spi.NamingManager.getObjectInstance(reference, new CompositeName().add(name), this,
+                    this.environment);
+        } catch (NamingException e) {
+            throw e;
+        } catch (Exception e) {
+            NamingException ne = new NamingException(e.getMessage());
+            ne.setRootCause(e);
+            throw ne;
+        }
+        if (ret == null) {
+            throw new NamingException("Can not build an object with the reference '" + name + "'");
+        }
+        return ret;
+    }
+
+    /**
+     * Checks if the object built from the given reference can be shared.
+     * @param reference a {@link Reference} or {@link Referenceable} object
+     * @return false if the reference has a {@link #SHAREABLE_REF_ADDR} address set to false
+     * @throws NamingException if the reference can't be retrieved
+     */
+    private static boolean isShareable(final Object reference) throws NamingException {
+        Reference ref;
+        if (reference instanceof Reference) {
+            ref = (Reference) reference;
+        } else {
+            ref = ((Referenceable) reference).getReference();
+        }
+        if (ref == null) {
+            return true;
+        }
+        RefAddr shareable = ref.get(SHAREABLE_REF_ADDR);
+        return shareable == null || !"false".equalsIgnoreCase(String.valueOf(shareable.getContent()));
+    }
+
+    /**
+     * Drops the object built from the reference (or targeted by the link)
+     * bound with the given name (if any).
+     * Must be called while holding the {@link #writeLock}.
+     * @param name the name of the binding
+     */
+    private void forgetResolvedObject(final String name) {
+        if (this.resolvedObjects != null) {
+            this.resolvedObjects.remove(name);
+        }
+        if (this.linkTargets != null) {
+            this.linkTargets.remove(name);
+        }
+    }
+
+    /**
+     * Binds the given atomic name to an object in this context.
+     * @param name the atomic name to bind
+     * @param obj the object to bind; possibly null
+     * @throws NamingException if a naming exception is encountered
+     */
+    private void bindLeaf(final String name, final Object obj) throws NamingException {
+        if (wrappedContext != null) {
+            forgetWrappedObjects();
+            wrappedContext.bind(name, obj);
+            return;
+        }
+
+        // leaf in the env tree
+        synchronized (writeLock) {
+            checkNotSealed();
+            if (this.bindings.get(name) != null) {
+                throw new NameAlreadyBoundException("CompNamingContext: Use rebind to bind over a name");
+            }
+            putBinding(name, obj);
+        }
+    }
+
+    /**
+     * Binds the given atomic name to an object in this context, overwriting any existing binding.
+     * @param name the atomic name to bind
+     * @param obj the object to bind; possibly null
+     * @throws NamingException if the context is sealed
+     */
+    private void rebindLeaf(final String name, final Object obj) throws NamingException {
+        synchronized (writeLock) {
+            checkNotSealed();
+            putBinding(name, obj);
+        }
+    }
+
+    /**
+     * Unbinds the given atomic name from this context.
+     * @param name the atomic name to unbind
+     * @throws NamingException if a naming exception is encountered
+     */
+    private void unbindLeaf(final String name) throws NamingException {
+        synchronized (writeLock) {
+            checkNotSealed();
+            if (removeBinding(name) == null) {
+                throw nameNotFound(name);
+            }
+        }
+    }
+
+    /**
+     * Creates a new context and binds it with the given atomic name in this context.
+     * @param name the atomic name of the context to create
+     * @return the newly created context
+     * @throws NamingException if the context is sealed
+     */
+    private Context createSubcontextLeaf(final String name) throws NamingException {
+        Context ctx = new ContextImpl(this.id, this.environment, this);
+        synchronized (writeLock) {
+            checkNotSealed();
+            putBinding(name, ctx);
+        }
+        return ctx;
+    }
+
+    /**
+     * Destroys the subcontext bound with the given atomic name in this context.
+     * Nothing is done if the name is not bound. Contexts that have not been
+     * created by this context are only unbound.
+     * @param name the atomic name of the context to destroy
+     * @throws NamingException if the name is not bound to a context or if some objects can't be released
+     */
+    private void destroySubcontextLeaf(final String name) throws NamingException {
+        Object obj;
+        synchronized (writeLock) {
+            checkNotSealed();
+            obj = this.bindings.get(name);
+            if (obj == null) {
+                return;
+            }
+            if (!(obj instanceof Context)) {
+                throw new NotContextException(name);
+            }
+            // detached at once, lookups are seeing the context or nothing
+            removeBinding(name);
+        }
+        if (obj instanceof ContextImpl && ((ContextImpl) obj).parent == this) {
+            ((ContextImpl) obj).destroy();
+        }
+    }
+
+    /**
+     * Releases the bindings of this context and of the subcontexts it has
+     * created. It runs in parallel if {@link #PARALLEL_DESTROY} is enabled
+     * and if the pool of the naming component is set.
+     * @throws NamingException if some objects can't be released
+     */
+    private void destroy() throws NamingException {
+        Queue<Exception> failures = new ConcurrentLinkedQueue<Exception>();
+        Hashtable<Object, Object> env = this.environment;
+        ForkJoinPool pool = destroyPool;
+        boolean released = false;
+        if (pool != null && env != null && isEnabled(env, PARALLEL_DESTROY)) {
+            try {
+                pool.invoke(new DestroyTask(this, failures));
+                released = true;
+            } catch (RejectedExecutionException e) {
+                // stopped in the meantime: released by the current thread
+                released = false;
+            }
+        }
+        if (!released) {
+            Deque<ContextImpl> contexts = new ArrayDeque<ContextImpl>();
+            contexts.push(this);
+            while (!contexts.isEmpty()) {
+                for (ContextImpl subcontext : contexts.pop().release(failures)) {
+                    contexts.push(subcontext);
+                }
+            }
+        }
+        if (!failures.isEmpty()) {
+            NamingException ne = new NamingException("Unable to release " + failures.size()
+                    + " object(s) of the context '" + id + "'");
+            ne.setRootCause(failures.peek());
+            throw ne;
+        }
+    }
+
+    /**
+     * Removes all the bindings of this context and closes the objects built
+     * from references. The targets of the links are not closed as they are
+     * not owned by this context.
+     * @param failures the exceptions thrown while closing objects
+     * @return the subcontexts created by this context, to be released too
+     */
+    private List<ContextImpl> release(final Queue<Exception> failures) {
+        Map<String, Object> releasedBindings;
+        Map<String, ResolvedObject> releasedObjects;
+        Context releasedLinkContext;
+        synchronized (writeLock) {
+            releasedBindings = this.bindings;
+            releasedObjects = this.resolvedObjects;
+            releasedLinkContext = this.linkContext;
+            this.linkContext = null;
+            long version = Snapshots.beginUpdate(this);
+            try {
+                if (version > 0) {
+                    for (Map.Entry<String, Object> entry : releasedBindings.entrySet()) {
+                        remember(entry.getKey(), entry.getValue(), version);
+                    }
+                }
+                if (releasedBindings instanceof SealedBindings) {
+                    // still sealed
+                    this.bindings = new SealedBindings(new CompactBindings());
+                } else {
+                    this.bindings = new CompactBindings();
+                }
+            } finally {
+                Snapshots.endUpdate(this, version);
+            }
+            this.resolvedObjects = null;
+            this.linkTargets = null;
+            this.sortedNames = null;
+            MODIFICATIONS.incrementAndGet();
+            STRUCTURE.incrementAndGet(root);
+            for (String name : releasedBindings.keySet()) {
+                bindingChanged(name, null);
+            }
+            List<ListenerRegistration> held = this.listeners;
+            if (held != null) {
+                for (ListenerRegistration registration : held) {
+                    if (registration.getScope() == SUBTREE_SCOPE) {
+                        SUBTREE_LISTENERS.decrementAndGet(root);
+                    }
+                }
+            }
+            this.listeners = null;
+        }
+        if (releasedLinkContext != null) {
+            try {
+                releasedLinkContext.close();
+            } catch (NamingException e) {
+                failures.add(e);
+            }
+        }
+        if (releasedObjects != null) {
+            for (ResolvedObject resolvedObject : releasedObjects.values()) {
+                Object instance = resolvedObject.getInstance();
+                try {
+                    if (instance instanceof Context) {
+                        ((Context) instance).close();
+                    } else if (instance instanceof AutoCloseable) {
+                        ((AutoCloseable) instance).close();
+                    }
+                } catch (Exception e) {
+                    failures.add(e);
+                }
+            }
+        }
+        List<ContextImpl> subcontexts = new ArrayList<ContextImpl>();
+        for (Object obj : releasedBindings.values()) {
+            if (obj instanceof ContextImpl && ((ContextImpl) obj).parent == this) {
+                subcontexts.add((ContextImpl) obj);
+            }
+        }
+        return subcontexts;
+    }
+
+    /**
+     * Splits the given name into its atomic components. The result is cached
+     * and it must not be modified.
+     * @param name the name to parse
+     * @return the components of the name
+     * @throws InvalidNameException if the name is not valid
+     */
+    private static String[] parse(final String name) throws InvalidNameException {
+        String[] segments = NAMES.get(name);
+        if (segments == null) {
+            segments = split(name);
+            NAMES.put(name, segments);
+        }
+        return segments;
+    }
+
+    /**
+     * Splits the given name into its atomic components.
+     * @param name the name to parse
+     * @return the components of the name
+     * @throws InvalidNameException if the name is not valid
+     */
+    private static String[] split(final String name) throws InvalidNameException {
+        return components(new CompositeName(name));
+    }
+
+    /**
+     * Gets the atomic components of the given name, without parsing it again.
+     * The components already bound somewhere are the instances shared by all
+     * the contexts. The other ones are only shared once they are bound.
+     * @param name the name
+     * @return the components of the name
+     */
+    private static String[] components(final Name name) {
+        int size = name.size();
+        String[] segments = new String[size];
+        for (int i = 0; i < size; i++) {
+            segments[i] = Segments.find(name.get(i));
+        }
+        return segments;
+    }
+
+    /**
+     * Checks that the given name to update doesn't end with an empty
+     * component (like "a/"). Such a name only designates a context for the
+     * lookups.
+     * @param segments the components of the name; may not be empty
+     * @throws InvalidNameException if the last component is empty
+     */
+    private static void checkLastComponent(final String[] segments) throws InvalidNameException {
+        if (segments[segments.length - 1].length() == 0) {
+            throw new InvalidNameException("CompNamingContext: '" + suffix(segments, 0)
+                    + "' ends with an empty component");
+        }
+    }
+
+    /**
+     * Builds the name made of the given components starting at the given
+     * position. It is used when an operation is delegated to another context.
+     * @param segments the components of the name
+     * @param from the position of the first component to keep
+     * @return the remaining name
+     * @throws InvalidNameException if the name is not valid
+     */
+    private static Name suffix(final String[] segments, final int from) throws InvalidNameException {
+        Name n = new CompositeName();
+        for (int i = from; i < segments.length; i++) {
+            n.add(segments[i]);
+        }
+        return n;
+    }
+
+    /**
+     * Find if this name is a sub context.
+     * @param name the sub context name
+     * @return the named Context
+     * @throws NamingException When nam?ing fails
+     * @see javax.naming.NameNotFoundException
+     * @see javax.naming.NameAlreadyBoundException
+     */
+    private Context lookupCtx(final String name) throws NamingException {
+        Object obj = this.bindings.get(name);
+        if (obj == null) {
+            throw nameNotFound("No subcontext named '" + name + "' has been found");
+        }
+        if (obj instanceof Context) {
+            return (Context) obj;
+        }
+        throw new NameAlreadyBoundException(name);
+    }
+
+    /**
+     * Find if this name is a sub context or create it if it doesn't exist yet.
+     * The check and the creation are done atomically so that concurrent
+     * writers are sharing the same sub context.
+     * @param name the sub context name
+     * @return the named Context
+     * @throws NamingException if the name is bound to an object which is not a context
+     */
+    private Context lookupOrCreateCtx(final String name) throws NamingException {
+        // Existing sub contexts are found without any lock
+        Object current = this.bindings.get(name);
+        if (current instanceof Context) {
+            return (Context) current;
+        }
+        synchronized (writeLock) {
+            Object obj = this.bindings.get(name);
+            if (obj == null) {
+                checkNotSealed();
+                Context ctx = new ContextImpl(this.id, this.environment, this);
+                putBinding(name, ctx);
+                return ctx;
+            }
+            if (obj instanceof Context) {
+                return (Context) obj;
+            }
+        }
+        throw new NameAlreadyBoundException(name);
+    }
+
+
+    /**
+     * @return the cache of the parsed names shared by all the contexts.
+     */
+    public static NameCache<String[]> getNameCache() {
+        return NAMES;
+    }
+
+    /**
+     * Sets the pool releasing in parallel the contexts destroyed with the
+     * {@link #PARALLEL_DESTROY} property. Without pool, they are released by
+     * the thread destroying them.
+     * @param pool the pool, or null
+     */
+    public static void setDestroyPool(final ForkJoinPool pool) {
+        destroyPool = pool;
+    }
+
+    /**
+     * Sets the executor notifying the listeners of all the contexts. Without
+     * executor, the listeners are notified by the threads changing the
+     * contexts.
+     * @param executor the executor, or null
+     */
+    public static void setEventExecutor(final Executor executor) {
+        EventDispatcher.setExecutor(executor);
+    }
+
+    /**
+     * Compiles the given name into a handle. The handle keeps the context
+     * holding the last component of the name so that a lookup is a single
+     * probe of its bindings until the structure of the trees it goes through
+     * changes. The handles are kept by this context and shared by the
+     * callers compiling the same name.
+     * @param name the name relative to this context
+     * @return the handle of this name
+     * @throws NamingException if the name is invalid
+     */
+    public LookupHandle compile(final String name) throws NamingException {
+        ConcurrentMap<String, CompiledName> compiled = this.compiledNames;
+        if (compiled != null) {
+            CompiledName handle = compiled.get(name);
+            if (handle != null) {
+                return handle;
+            }
+        }
+        CompiledName handle = new CompiledName(this, name, parse(name));
+        if (compiled == null) {
+            synchronized (writeLock) {
+                compiled = this.compiledNames;
+                if (compiled == null) {
+                    compiled = new ConcurrentHashMap<String, CompiledName>();
+                    this.compiledNames = compiled;
+                }
+            }
+        }
+        if (compiled.size() < MAX_COMPILED_NAMES) {
+            CompiledName previous = compiled.putIfAbsent(name, handle);
+            if (previous != null) {
+                return previous;
+            }
+        }
+        return handle;
+    }
+
+    /**
+     * Finds the context holding the last component of the given name,
+     * without any delegation.
+     * @param segments the components of the name
+     * @return the path to the context, with a null context if the name goes
+     *         through a wrapped or a foreign context
+     */
+    private CompiledPath findLeafContext(final String[] segments) {
+        List<ContextImpl> roots = new ArrayList<ContextImpl>(2);
+        List<Long> versions = new ArrayList<Long>(2);
+        ContextImpl ctx = this;
+        for (int i = 0; ; i++) {
+            // the version of a tree is read before its bindings
+            if (!roots.contains(ctx.root)) {
+                roots.add(ctx.root);
+                versions.add(Long.valueOf(ctx.root.structure));
+            }
+            if (ctx.wrappedContext != null && ctx.wrapAllOperations) {
+                ctx = null;
+                break;
+            }
+            if (i >= segments.length - 1) {
+                break;
+            }
+            Object obj = ctx.getBinding(segments[i], -1L);
+            if (!(obj instanceof ContextImpl)) {
+                ctx = null;
+                break;
+            }
+            ctx = (ContextImpl) obj;
+        }
+        long[] values = new long[versions.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = versions.get(i).longValue();
+        }
+        return new CompiledPath(ctx, roots.toArray(new ContextImpl[roots.size()]), values);
+    }
+
+    /**
+     * Allow to wrap a given context for delegating lookup operations.
+     * @param wrappedContext the context that will be wrapped
+     */
+    public void addWrapped(final Context wrappedContext) {
+        addWrapped(wrappedContext, false);
     }
 
     /**
@@ -691,7 +2790,485 @@ public class ContextImpl implements Context {
     public void addWrapped(final Context wrappedContext, final boolean wrapAllOperations) {
         this.wrappedContext = wrappedContext;
         this.wrapAllOperations = wrapAllOperations;
+        this.wrappedCache = null;
+        STRUCTURE.incrementAndGet(root);
+    }
+
+    /**
+     * Allow to wrap a given context for delegating lookup operations. The
+     * objects found in the wrapped context are cached: an entry expires after
+     * the given time and the least recently used entry is evicted when the
+     * cache is full.
+     * @param wrappedContext the context that will be wrapped
+     * @param wrapAllOperations if all access are redirected to this wrapped context
+     * @param cacheSize the maximum number of cached objects
+     * @param timeToLive the time during which a cached object is used
+     * @param unit the unit of the time to live
+     */
+    public void addWrapped(final Context wrappedContext, final boolean wrapAllOperations, final int cacheSize,
+            final long timeToLive, final TimeUnit unit) {
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("Invalid cache size '" + cacheSize + "'");
+        }
+        this.wrappedContext = wrappedContext;
+        this.wrapAllOperations = wrapAllOperations;
+        this.wrappedCache = new WrappedContextCache(cacheSize, timeToLive, unit);
+        STRUCTURE.incrementAndGet(root);
+    }
+
+    /**
+     * Removes the objects cached for the wrapped context as it is modified
+     * through this context.
+     */
+    private void forgetWrappedObjects() {
+        WrappedContextCache cache = this.wrappedCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Object built from a reference (or targeted by a link), associated to the
+     * bound reference.
+     * @author Florent Benoit
+     */
+    private static final class ResolvedObject {
+
+        /**
+         * The bound object (Reference or Referenceable).
+         */
+        private final Object binding;
+
+        /**
+         * The object built from this binding.
+         */
+        private final Object instance;
+
+        /**
+         * Value of the modifications counter when the object has been resolved.
+         */
+        private final long version;
+
+        /**
+         * Constructor.
+         * @param binding the bound object
+         * @param instance the object built from this binding
+         * @param version value of the modifications counter
+         */
+        public ResolvedObject(final Object binding, final Object instance, final long version) {
+            this.binding = binding;
+            this.instance = instance;
+            this.version = version;
+        }
+
+        /**
+         * @return the bound object
+         */
+        public Object getBinding() {
+            return binding;
+        }
+
+        /**
+         * @return the object built from the binding
+         */
+        public Object getInstance() {
+            return instance;
+        }
+
+        /**
+         * @return the value of the modifications counter when the object has been resolved
+         */
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * Binding waiting to be done by a batch operation.
+     * @author Florent Benoit
+     */
+    private static final class PendingBinding {
+
+        /**
+         * Name given by the caller.
+         */
+        private final String name;
+
+        /**
+         * Atomic name in the parent context.
+         */
+        private final String segment;
+
+        /**
+         * Object to bind.
+         */
+        private final Object object;
+
+        /**
+         * Constructor.
+         * @param name the name given by the caller
+         * @param segment the atomic name in the parent context
+         * @param object the object to bind
+         */
+        public PendingBinding(final String name, final String segment, final Object object) {
+            this.name = name;
+            this.segment = segment;
+            this.object = object;
+        }
+
+        /**
+         * @return the name given by the caller
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the atomic name in the parent context
+         */
+        public String getSegment() {
+            return segment;
+        }
+
+        /**
+         * @return the object to bind
+         */
+        public Object getObject() {
+            return object;
+        }
     }
 
+    /**
+     * Tree of the bindings waiting to be done by a batch operation.
+     * @author Florent Benoit
+     */
+    private static final class PendingBindings {
+
+        /**
+         * Bindings of this context (atomic name <--> binding).
+         */
+        private final Map<String, PendingBinding> bindings = new LinkedHashMap<String, PendingBinding>();
+
+        /**
+         * Bindings of the subcontexts (atomic name <--> bindings).
+         */
+        private final Map<String, PendingBindings> subcontexts = new LinkedHashMap<String, PendingBindings>();
+
+        /**
+         * Adds a binding.
+         * @param segments the components of the name
+         * @param name the name given by the caller
+         * @param object the object to bind
+         * @throws NamingException if the name is already used by the batch
+         */
+        public void add(final String[] segments, final String name, final Object object) throws NamingException {
+            PendingBindings pendingBindings = this;
+            int last = segments.length - 1;
+            for (int i = 0; i < last; i++) {
+                if (pendingBindings.bindings.containsKey(segments[i])) {
+                    throw new NameAlreadyBoundException(name);
+                }
+                PendingBindings subcontext = pendingBindings.subcontexts.get(segments[i]);
+                if (subcontext == null) {
+                    subcontext = new PendingBindings();
+                    pendingBindings.subcontexts.put(segments[i], subcontext);
+                }
+                pendingBindings = subcontext;
+            }
+            String segment = segments[last];
+            if (pendingBindings.bindings.containsKey(segment) || pendingBindings.subcontexts.containsKey(segment)) {
+                throw new NameAlreadyBoundException(name);
+            }
+            pendingBindings.bindings.put(segment, new PendingBinding(name, segment, object));
+        }
+
+        /**
+         * @return the bindings of this context (atomic name <--> binding)
+         */
+        public Map<String, PendingBinding> getBindings() {
+            return bindings;
+        }
+
+        /**
+         * @return the bindings of the subcontexts (atomic name <--> bindings)
+         */
+        public Map<String, PendingBindings> getSubcontexts() {
+            return subcontexts;
+        }
+
+        /**
+         * Reports the same failure for all the bindings of this tree.
+         * @param e the failure
+         * @param failures the exceptions of the names that can't be bound
+         */
+        public void fail(final NamingException e, final Map<String, NamingException> failures) {
+            for (PendingBinding pendingBinding : bindings.values()) {
+                failures.put(pendingBinding.getName(), e);
+            }
+            for (PendingBindings pendingBindings : subcontexts.values()) {
+                pendingBindings.fail(e, failures);
+            }
+        }
+    }
+
+    /**
+     * Task releasing a context and then its subcontexts in parallel.
+     * @author Florent Benoit
+     */
+    private static final class DestroyTask extends RecursiveAction {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 2817043564421378610L;
+
+        /**
+         * Context to release.
+         */
+        private final transient ContextImpl context;
+
+        /**
+         * The exceptions thrown while closing objects.
+         */
+        private final transient Queue<Exception> failures;
+
+        /**
+         * Constructor.
+         * @param context the context to release
+         * @param failures the exceptions thrown while closing objects
+         */
+        public DestroyTask(final ContextImpl context, final Queue<Exception> failures) {
+            this.context = context;
+            this.failures = failures;
+        }
+
+        /**
+         * Releases the context and its subcontexts.
+         */
+        @Override
+        protected void compute() {
+            List<ContextImpl> subcontexts = context.release(failures);
+            if (subcontexts.isEmpty()) {
+                return;
+            }
+            List<DestroyTask> tasks = new ArrayList<DestroyTask>(subcontexts.size());
+            for (ContextImpl subcontext : subcontexts) {
+                tasks.add(new DestroyTask(subcontext, failures));
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Name compiled for a given context.
+     * @author Florent Benoit
+     */
+    private static final class CompiledName implements LookupHandle {
+
+        /**
+         * Context used to compile the name.
+         */
+        private final ContextImpl context;
+
+        /**
+         * The name.
+         */
+        private final String name;
+
+        /**
+         * The components of the name.
+         */
+        private final String[] segments;
+
+        /**
+         * The last component of the name.
+         */
+        private final String[] leaf;
+
+        /**
+         * Path found for the current structure of the contexts.
+         */
+        private volatile CompiledPath path = null;
+
+        /**
+         * Constructor.
+         * @param context the context used to compile the name
+         * @param name the name
+         * @param segments the components of the name
+         */
+        public CompiledName(final ContextImpl context, final String name, final String[] segments) {
+            this.context = context;
+            this.name = name;
+            this.segments = segments;
+            if (segments.length > 0) {
+                this.leaf = new String[] {segments[segments.length - 1]};
+            } else {
+                this.leaf = segments;
+            }
+        }
+
+        /**
+         * @return the name
+         */
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Retrieves the object bound to the compiled name.
+         * @return the object bound to the name
+         * @throws NamingException if a naming exception is encountered
+         */
+        @Override
+        public Object lookup() throws NamingException {
+            CompiledPath current = this.path;
+            if (current == null || !current.isValid()) {
+                current = context.findLeafContext(segments);
+                this.path = current;
+            }
+            ContextImpl leafContext = current.getLeafContext();
+            if (leafContext == null || Snapshots.currentVersion() >= 0) {
+                // can't be compiled or a snapshot is used, full lookup
+                return context.lookup(segments, true, name);
+            }
+            return leafContext.lookup(leaf, true, null);
+        }
+    }
+
+    /**
+     * Context holding the last component of a compiled name, valid for a
+     * given structure of the trees it goes through.
+     * @author Florent Benoit
+     */
+    private static final class CompiledPath {
+
+        /**
+         * The context holding the last component (null if not found).
+         */
+        private final ContextImpl leafContext;
+
+        /**
+         * Roots of the trees the path goes through.
+         */
+        private final ContextImpl[] roots;
+
+        /**
+         * Values of the structure counters of the roots when the path has been found.
+         */
+        private final long[] versions;
+
+        /**
+         * Constructor.
+         * @param leafContext the context holding the last component
+         * @param roots the roots of the trees the path goes through
+         * @param versions the values of the structure counters of the roots
+         */
+        public CompiledPath(final ContextImpl leafContext, final ContextImpl[] roots, final long[] versions) {
+            this.leafContext = leafContext;
+            this.roots = roots;
+            this.versions = versions;
+        }
+
+        /**
+         * @return the context holding the last component (null if not found)
+         */
+        public ContextImpl getLeafContext() {
+            return leafContext;
+        }
+
+        /**
+         * @return true if the structure of the trees has not changed since the path has been found
+         */
+        public boolean isValid() {
+            for (int i = 0; i < roots.length; i++) {
+                if (roots[i].structure != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+
+    /**
+     * Object bound to a name before a change.
+     * @author Florent Benoit
+     */
+    private static final class BindingHistory {
+
+        /**
+         * The object bound before the change (null if the name was not bound).
+         */
+        private final Object object;
+
+        /**
+         * The version of the change.
+         */
+        private final long version;
+
+        /**
+         * The object bound before the previous change.
+         */
+        private final BindingHistory older;
+
+        /**
+         * Constructor.
+         * @param object the object bound before the change
+         * @param version the version of the change
+         * @param older the object bound before the previous change
+         */
+        public BindingHistory(final Object object, final long version, final BindingHistory older) {
+            this.object = object;
+            this.version = version;
+            this.older = older;
+        }
+
+        /**
+         * @return the object bound before the change (null if the name was not bound)
+         */
+        public Object getObject() {
+            return object;
+        }
+
+        /**
+         * @return the version of the change
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return the object bound before the previous change
+         */
+        public BindingHistory getOlder() {
+            return older;
+        }
+
+        /**
+         * Gets the entries of the changes done after the given version.
+         * @param oldest the version
+         * @return the kept entries or null if there is none
+         */
+        public BindingHistory keepAfter(final long oldest) {
+            // the entries are ordered from the last change, so the dropped
+            // ones are at the end
+            List<BindingHistory> kept = new ArrayList<BindingHistory>();
+            BindingHistory entry = this;
+            while (entry != null && entry.version > oldest) {
+                kept.add(entry);
+                entry = entry.older;
+            }
+            if (entry == null) {
+                return this;
+            }
+            BindingHistory copy = null;
+            for (int i = kept.size() - 1; i >= 0; i--) {
+                BindingHistory keptEntry = kept.get(i);
+                copy = new BindingHistory(keptEntry.object, keptEntry.version, copy);
+            }
+            return copy;
+        }
+    }
 
 }
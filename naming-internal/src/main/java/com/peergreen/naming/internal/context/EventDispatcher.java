@@ -0,0 +1,406 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal.context;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.naming.Binding;
+import javax.naming.NamingException;
+import javax.naming.event.NamespaceChangeListener;
+import javax.naming.event.NamingEvent;
+import javax.naming.event.NamingExceptionEvent;
+import javax.naming.event.NamingListener;
+import javax.naming.event.ObjectChangeListener;
+
+/**
+ * Dispatches the naming events to the listeners on a dedicated thread, so
+ * that the updates of the contexts are not slowed down by the listeners.
+ * The events waiting to be dispatched are coalesced: the successive changes
+ * of a name (like during a deployment) are notified as a single event.
+ * The thread is owned by the naming component, which sets its executor
+ * while it is started. Otherwise the events are dispatched by the thread
+ * changing the contexts.
+ * @author Florent Benoit
+ */
+final class EventDispatcher {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(EventDispatcher.class.getName());
+
+    /**
+     * Maximum number of events coalesced together.
+     */
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    /**
+     * Executor dispatching the events (null if the component is stopped).
+     */
+    private static volatile Executor executor;
+
+    /**
+     * Events waiting to be dispatched.
+     */
+    private static final Queue<PendingEvent> QUEUE = new ConcurrentLinkedQueue<PendingEvent>();
+
+    /**
+     * Is the dispatch of the waiting events scheduled ?
+     */
+    private static final AtomicBoolean SCHEDULED = new AtomicBoolean();
+
+    /**
+     * Dispatches the waiting events.
+     */
+    private static final Runnable DRAIN = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Utility class.
+     */
+    private EventDispatcher() {
+    }
+
+    /**
+     * Sets the executor dispatching the events.
+     * @param eventExecutor the executor, null to dispatch the events in the
+     * threads changing the contexts
+     */
+    static void setExecutor(final Executor eventExecutor) {
+        executor = eventExecutor;
+    }
+
+    /**
+     * Adds an event to dispatch. It doesn't block unless there is no
+     * executor to dispatch it.
+     * @param registration the registration of the listener
+     * @param type the type of the event (see {@link NamingEvent})
+     * @param path the atomic names leading from the holder of the registration to the changed context
+     * @param oldName the old atomic name (null for an added object)
+     * @param oldObject the old object (null for an added object)
+     * @param newName the new atomic name (null for a removed object)
+     * @param newObject the new object (null for a removed object)
+     */
+    static void post(final ListenerRegistration registration, final int type, final String[] path,
+            final String oldName, final Object oldObject, final String newName, final Object newObject) {
+        QUEUE.add(new PendingEvent(registration, type, path, oldName, oldObject, newName, newObject));
+        if (SCHEDULED.compareAndSet(false, true)) {
+            Executor current = executor;
+            if (current != null) {
+                try {
+                    current.execute(DRAIN);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // stopped in the meantime
+                    LOGGER.log(Level.FINE, "Naming events dispatched by the current thread", e);
+                }
+            }
+            drain();
+        }
+    }
+
+    /**
+     * Dispatches the waiting events, by batches.
+     */
+    private static void drain() {
+        while (true) {
+            List<Notification> notifications = new ArrayList<Notification>();
+            Map<ListenerRegistration, Map<String, Notification>> last =
+                    new IdentityHashMap<ListenerRegistration, Map<String, Notification>>();
+            PendingEvent event;
+            int count = 0;
+            while (count < MAX_BATCH_SIZE && (event = QUEUE.poll()) != null) {
+                count++;
+                coalesce(event.toNotification(), notifications, last);
+            }
+            for (Notification notification : notifications) {
+                notification.dispatch();
+            }
+            if (count == MAX_BATCH_SIZE) {
+                continue;
+            }
+            SCHEDULED.set(false);
+            // events added while clearing the flag ?
+            if (QUEUE.isEmpty() || !SCHEDULED.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds a notification to the batch, merged with the previous one of the
+     * same name if possible. A rename is never merged and the changes of its
+     * names done before it are no longer merged with the following ones.
+     * @param notification the notification to add
+     * @param notifications the batch
+     * @param last the last notification of each name, by registration
+     */
+    private static void coalesce(final Notification notification, final List<Notification> notifications,
+            final Map<ListenerRegistration, Map<String, Notification>> last) {
+        Map<String, Notification> byName = last.get(notification.registration);
+        if (notification.type == NamingEvent.OBJECT_RENAMED) {
+            if (byName != null) {
+                byName.remove(notification.oldBinding.getName());
+                byName.remove(notification.newBinding.getName());
+            }
+            notifications.add(notification);
+            return;
+        }
+        if (byName == null) {
+            byName = new HashMap<String, Notification>();
+            last.put(notification.registration, byName);
+        }
+        String name = notification.getName();
+        Notification previous = byName.get(name);
+        if (previous != null && previous.merge(notification)) {
+            if (previous.type < 0) {
+                // cancelled
+                byName.remove(name);
+            }
+            return;
+        }
+        byName.put(name, notification);
+        notifications.add(notification);
+    }
+
+    /**
+     * Change queued by a context.
+     * @author Florent Benoit
+     */
+    private static final class PendingEvent {
+
+        /**
+         * The registration of the listener.
+         */
+        private final ListenerRegistration registration;
+
+        /**
+         * The type of the event.
+         */
+        private final int type;
+
+        /**
+         * The atomic names leading from the holder to the changed context.
+         */
+        private final String[] path;
+
+        /**
+         * The old atomic name.
+         */
+        private final String oldName;
+
+        /**
+         * The old object.
+         */
+        private final Object oldObject;
+
+        /**
+         * The new atomic name.
+         */
+        private final String newName;
+
+        /**
+         * The new object.
+         */
+        private final Object newObject;
+
+        /**
+         * Constructor.
+         * @param registration the registration of the listener
+         * @param type the type of the event
+         * @param path the atomic names leading from the holder to the changed context
+         * @param oldName the old atomic name
+         * @param oldObject the old object
+         * @param newName the new atomic name
+         * @param newObject the new object
+         */
+        PendingEvent(final ListenerRegistration registration, final int type, final String[] path,
+                final String oldName, final Object oldObject, final String newName, final Object newObject) {
+            this.registration = registration;
+            this.type = type;
+            this.path = path;
+            this.oldName = oldName;
+            this.oldObject = oldObject;
+            this.newName = newName;
+            this.newObject = newObject;
+        }
+
+        /**
+         * Builds the bindings of the event, with names relative to the source.
+         * @return the notification
+         */
+        Notification toNotification() {
+            Binding oldBinding = null;
+            if (oldName != null) {
+                oldBinding = new Binding(registration.getName(path, oldName), oldObject);
+            }
+            Binding newBinding = null;
+            if (newName != null) {
+                newBinding = new Binding(registration.getName(path, newName), newObject);
+            }
+            return new Notification(registration, type, oldBinding, newBinding);
+        }
+    }
+
+    /**
+     * Event to notify to a listener.
+     * @author Florent Benoit
+     */
+    private static final class Notification {
+
+        /**
+         * The registration of the listener.
+         */
+        private final ListenerRegistration registration;
+
+        /**
+         * The type of the event (negative if cancelled).
+         */
+        private int type;
+
+        /**
+         * The binding before the change.
+         */
+        private Binding oldBinding;
+
+        /**
+         * The binding after the change.
+         */
+        private Binding newBinding;
+
+        /**
+         * Constructor.
+         * @param registration the registration of the listener
+         * @param type the type of the event
+         * @param oldBinding the binding before the change
+         * @param newBinding the binding after the change
+         */
+        Notification(final ListenerRegistration registration, final int type, final Binding oldBinding,
+                final Binding newBinding) {
+            this.registration = registration;
+            this.type = type;
+            this.oldBinding = oldBinding;
+            this.newBinding = newBinding;
+        }
+
+        /**
+         * @return the name of the changed binding
+         */
+        String getName() {
+            if (newBinding != null) {
+                return newBinding.getName();
+            }
+            return oldBinding.getName();
+        }
+
+        /**
+         * Merges the given later change of the same name into this one.
+         * @param next the later change
+         * @return false if the changes can't be merged
+         */
+        boolean merge(final Notification next) {
+            switch (type) {
+                case NamingEvent.OBJECT_ADDED:
+                    if (next.type == NamingEvent.OBJECT_CHANGED) {
+                        newBinding = next.newBinding;
+                        return true;
+                    }
+                    if (next.type == NamingEvent.OBJECT_REMOVED) {
+                        // never seen
+                        type = -1;
+                        return true;
+                    }
+                    return false;
+                case NamingEvent.OBJECT_CHANGED:
+                    if (next.type == NamingEvent.OBJECT_CHANGED) {
+                        newBinding = next.newBinding;
+                        return true;
+                    }
+                    if (next.type == NamingEvent.OBJECT_REMOVED) {
+                        type = NamingEvent.OBJECT_REMOVED;
+                        newBinding = null;
+                        return true;
+                    }
+                    return false;
+                case NamingEvent.OBJECT_REMOVED:
+                    if (next.type == NamingEvent.OBJECT_ADDED) {
+                        type = NamingEvent.OBJECT_CHANGED;
+                        newBinding = next.newBinding;
+                        return true;
+                    }
+                    return false;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Sends this event to the listener.
+         */
+        void dispatch() {
+            NamingListener listener = registration.getListener();
+            boolean interested;
+            if (type == NamingEvent.OBJECT_CHANGED) {
+                interested = listener instanceof ObjectChangeListener;
+            } else {
+                interested = type >= 0 && listener instanceof NamespaceChangeListener;
+            }
+            if (!interested) {
+                return;
+            }
+            try {
+                new NamingEvent(registration.getSource(), type, newBinding, oldBinding, null).dispatch(listener);
+            } catch (RuntimeException e) {
+                // a failing listener must not prevent the other ones to be notified
+                failed(listener, e);
+            }
+        }
+
+        /**
+         * Reports the failure of a listener to this listener.
+         * @param listener the listener
+         * @param e the exception thrown by the listener
+         */
+        private void failed(final NamingListener listener, final RuntimeException e) {
+            NamingException ne = new NamingException("Listener has failed to handle the change of '" + getName()
+                    + "'");
+            ne.setRootCause(e);
+            try {
+                new NamingExceptionEvent(registration.getSource(), ne).dispatch(listener);
+            } catch (RuntimeException re) {
+                LOGGER.log(Level.WARNING, "Naming listener '" + listener + "' has failed to handle the change of '"
+                        + getName() + "'", e);
+            }
+        }
+    }
+
+}
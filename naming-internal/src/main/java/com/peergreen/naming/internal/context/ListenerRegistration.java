@@ -0,0 +1,148 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal.context;
+
+import javax.naming.InvalidNameException;
+import javax.naming.Name;
+import javax.naming.event.EventContext;
+import javax.naming.event.NamingListener;
+
+/**
+ * Listener registered on a context for the changes of a target.
+ * The registration is kept by the context holding the bindings of the
+ * target (the parent of the target for the object scope).
+ * @author Florent Benoit
+ */
+final class ListenerRegistration {
+
+    /**
+     * Context used to register the listener (source of the events).
+     */
+    private final EventContext source;
+
+    /**
+     * Context holding the registration.
+     */
+    private final ContextImpl holder;
+
+    /**
+     * Name of the target, relative to the source.
+     */
+    private final Name target;
+
+    /**
+     * Atomic name of the target in the holder (object scope only).
+     */
+    private final String leaf;
+
+    /**
+     * Scope of the registration.
+     */
+    private final int scope;
+
+    /**
+     * The listener.
+     */
+    private final NamingListener listener;
+
+    /**
+     * Constructor.
+     * @param source the context used to register the listener
+     * @param holder the context holding the registration
+     * @param target the name of the target, relative to the source
+     * @param leaf the atomic name of the target in the holder (object scope only)
+     * @param scope the scope of the registration
+     * @param listener the listener
+     */
+    ListenerRegistration(final EventContext source, final ContextImpl holder, final Name target,
+            final String leaf, final int scope, final NamingListener listener) {
+        this.source = source;
+        this.holder = holder;
+        this.target = target;
+        this.leaf = leaf;
+        this.scope = scope;
+        this.listener = listener;
+    }
+
+    /**
+     * @return the context used to register the listener
+     */
+    EventContext getSource() {
+        return source;
+    }
+
+    /**
+     * @return the context holding the registration
+     */
+    ContextImpl getHolder() {
+        return holder;
+    }
+
+    /**
+     * @return the scope of the registration
+     */
+    int getScope() {
+        return scope;
+    }
+
+    /**
+     * @return the listener
+     */
+    NamingListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Checks if a change of the given atomic names of the holder is
+     * notified to this listener.
+     * @param oldName the old atomic name (may be null)
+     * @param newName the new atomic name (may be null)
+     * @return true if the listener is interested in this change
+     */
+    boolean matches(final String oldName, final String newName) {
+        if (scope != EventContext.OBJECT_SCOPE) {
+            return true;
+        }
+        return leaf.equals(oldName) || leaf.equals(newName);
+    }
+
+    /**
+     * Gets the name of a binding, relative to the source.
+     * @param path the atomic names leading from the holder to the context of the binding
+     * @param name the atomic name of the binding
+     * @return the name relative to the source
+     */
+    String getName(final String[] path, final String name) {
+        try {
+            if (scope == EventContext.OBJECT_SCOPE) {
+                if (leaf.equals(name)) {
+                    return target.toString();
+                }
+                // renamed
+                return target.getPrefix(target.size() - 1).add(name).toString();
+            }
+            Name n = (Name) target.clone();
+            for (String segment : path) {
+                n.add(segment);
+            }
+            return n.add(name).toString();
+        } catch (InvalidNameException e) {
+            return name;
+        }
+    }
+
+}
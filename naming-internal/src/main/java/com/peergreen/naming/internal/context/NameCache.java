@@ -0,0 +1,132 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal.context;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded cache of parsed names. It is keyed by the name as given by the
+ * caller and the values are the parsed form of this name.
+ * When the cache is full, an arbitrary entry is evicted before adding a new one.
+ * @param <V> the type of the parsed name
+ * @author Florent Benoit
+ */
+public class NameCache<V> {
+
+    /**
+     * Default maximum number of entries.
+     */
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    /**
+     * Parsed names.
+     */
+    private final ConcurrentMap<String, V> entries;
+
+    /**
+     * Maximum number of entries.
+     */
+    private final int maxSize;
+
+    /**
+     * Number of names found in the cache (striped as it is updated by each lookup).
+     */
+    private final StripedCounter hits = new StripedCounter();
+
+    /**
+     * Number of names not found in the cache.
+     */
+    private final StripedCounter misses = new StripedCounter();
+
+    /**
+     * Constructor.
+     * @param maxSize the maximum number of entries
+     */
+    public NameCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Constructor using the default maximum size.
+     */
+    public NameCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Gets the parsed form of the given name.
+     * @param name the name
+     * @return the parsed name or null if it is not in the cache
+     */
+    public V get(final String name) {
+        V value = entries.get(name);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Adds the parsed form of the given name.
+     * @param name the name
+     * @param value the parsed name
+     */
+    public void put(final String name, final V value) {
+        if (entries.size() >= maxSize) {
+            Iterator<String> keys = entries.keySet().iterator();
+            if (keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+        entries.put(name, value);
+    }
+
+    /**
+     * @return the number of names found in the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of names not found in the cache
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the current number of entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+}
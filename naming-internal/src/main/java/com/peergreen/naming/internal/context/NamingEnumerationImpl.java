@@ -16,7 +16,7 @@
 
 package com.peergreen.naming.internal.context;
 
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
@@ -32,22 +32,31 @@ import javax.naming.NamingException;
 public class NamingEnumerationImpl implements NamingEnumeration<NameClassPair> {
 
     /**
-     * list of names.
+     * Snapshot of the bindings.
      */
-    private final Iterator<String> names;
+    private final List<Map.Entry<String, Object>> bindings;
 
     /**
-     * List of bindings.
+     * Index of the next binding.
      */
-    private final Map<String, Object> bindings;
+    private int index = 0;
+
+    /**
+     * Class of the last returned binding.
+     */
+    private Class<?> lastClass = null;
+
+    /**
+     * Name of the class of the last returned binding.
+     */
+    private String lastClassName = null;
 
     /**
      * Constructor. Called by list()
-     * @param bindings list of bindings
+     * @param bindings snapshot of the bindings (it is not copied)
      */
-    NamingEnumerationImpl(final Map<String, Object> bindings) {
+    NamingEnumerationImpl(final List<Map.Entry<String, Object>> bindings) {
         this.bindings = bindings;
-        this.names = bindings.keySet().iterator();
     }
 
     /**
@@ -59,7 +68,7 @@ public class NamingEnumerationImpl implements NamingEnumeration<NameClassPair> {
      */
     @Override
     public boolean hasMore() throws NamingException {
-        return names.hasNext();
+        return index < bindings.size();
     }
 
     /**
@@ -74,9 +83,17 @@ public class NamingEnumerationImpl implements NamingEnumeration<NameClassPair> {
      */
     @Override
     public NameClassPair next() throws NamingException {
-        String name = names.next();
-        String className = bindings.get(name).getClass().getName();
-        return new NameClassPair(name, className);
+        if (index >= bindings.size()) {
+            throw new NoSuchElementException();
+        }
+        Map.Entry<String, Object> binding = bindings.get(index++);
+        // Consecutive bindings are often of the same type (contexts, references)
+        Class<?> clazz = binding.getValue().getClass();
+        if (clazz != lastClass) {
+            lastClass = clazz;
+            lastClassName = clazz.getName();
+        }
+        return new NameClassPair(binding.getKey(), lastClassName);
     }
 
     /**
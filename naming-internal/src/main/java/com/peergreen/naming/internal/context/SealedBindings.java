@@ -0,0 +1,168 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal.context;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable bindings of a sealed context. The names are stored in an open
+ * addressing table (at most half full) so that a lookup is a single hash
+ * computation followed by very few comparisons, without any synchronization.
+ * @author Florent Benoit
+ */
+final class SealedBindings extends AbstractMap<String, Object> {
+
+    /**
+     * Names of the bindings (hash table).
+     */
+    private final String[] keys;
+
+    /**
+     * Objects of the bindings (same index than the names).
+     */
+    private final Object[] values;
+
+    /**
+     * Mask used to compute an index from a hash.
+     */
+    private final int mask;
+
+    /**
+     * Names of the bindings sorted in natural order.
+     */
+    private final String[] sortedNames;
+
+    /**
+     * Bindings sorted by name.
+     */
+    private final List<Map.Entry<String, Object>> entries;
+
+    /**
+     * Constructor.
+     * @param bindings the bindings to copy
+     */
+    SealedBindings(final Map<String, Object> bindings) {
+        String[] names = bindings.keySet().toArray(new String[bindings.size()]);
+        Arrays.sort(names);
+
+        // power of two, at least twice the number of bindings
+        int capacity = 2;
+        while (capacity < names.length * 2) {
+            capacity <<= 1;
+        }
+        this.keys = new String[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+
+        List<Map.Entry<String, Object>> sortedEntries = new ArrayList<Map.Entry<String, Object>>(names.length);
+        for (String name : names) {
+            Object value = bindings.get(name);
+            int index = index(name);
+            while (keys[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = name;
+            values[index] = value;
+            sortedEntries.add(new AbstractMap.SimpleImmutableEntry<String, Object>(name, value));
+        }
+        this.sortedNames = names;
+        this.entries = Collections.unmodifiableList(sortedEntries);
+    }
+
+    /**
+     * Gets the first index to check for the given name.
+     * @param name the name
+     * @return the index in the hash table
+     */
+    private int index(final String name) {
+        int h = name.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Gets the object bound with the given name.
+     * @param key the name
+     * @return the object or null if the name is not bound
+     */
+    @Override
+    public Object get(final Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        String name = (String) key;
+        int index = index(name);
+        String current;
+        while ((current = keys[index]) != null) {
+            if (current == name || current.equals(name)) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @param key the name
+     * @return true if the name is bound
+     */
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the number of bindings
+     */
+    @Override
+    public int size() {
+        return sortedNames.length;
+    }
+
+    /**
+     * @return the bindings sorted by name
+     */
+    List<Map.Entry<String, Object>> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return an immutable view of the bindings, sorted by name
+     */
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return entries.iterator();
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+        };
+    }
+
+}
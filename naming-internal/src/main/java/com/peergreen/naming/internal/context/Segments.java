@@ -0,0 +1,89 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal.context;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Table of the name components shared by all the contexts. The same
+ * components (comp, env, jdbc, ...) are used by thousands of contexts: they
+ * are stored once and the bindings can be compared by identity.
+ * @author Florent Benoit
+ */
+final class Segments {
+
+    /**
+     * Maximum number of components in the table. Once reached, the new
+     * components are no longer shared.
+     */
+    private static final int MAX_SIZE = 65536;
+
+    /**
+     * Shared components.
+     */
+    private static final ConcurrentMap<String, String> TABLE = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Utility class.
+     */
+    private Segments() {
+    }
+
+    /**
+     * Gets the shared instance of the given component.
+     * @param segment the component
+     * @return the shared instance (or the given one if the table is full)
+     */
+    static String intern(final String segment) {
+        String shared = TABLE.get(segment);
+        if (shared != null) {
+            return shared;
+        }
+        if (TABLE.size() >= MAX_SIZE) {
+            return segment;
+        }
+        shared = TABLE.putIfAbsent(segment, segment);
+        if (shared == null) {
+            return segment;
+        }
+        return shared;
+    }
+
+    /**
+     * @return the number of shared components
+     */
+    static int size() {
+        return TABLE.size();
+    }
+
+    /**
+     * Gets the shared instance of the given component if it is already in
+     * the table. The table is not changed, so that the names that are only
+     * looked up (and possibly never bound) don't fill it.
+     * @param segment the component
+     * @return the shared instance or the given one if it is not shared
+     */
+    static String find(final String segment) {
+        String shared = TABLE.get(segment);
+        if (shared != null) {
+            return shared;
+        }
+        return segment;
+    }
+
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal.context;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.peergreen.naming.NamingSnapshot;
+
+/**
+ * Versions of the bindings of all the contexts. While snapshots are pinned,
+ * each update gets a new version and the contexts keep the previous objects
+ * of the updated names (see {@link ContextImpl}) so that the lookups done
+ * under a snapshot see the bindings of its version. A snapshot is pinned
+ * without waiting for the updates being applied: each context records its
+ * update in progress, and only the lookups of this context wait for it if
+ * it has been started before the snapshot. The previous objects no longer
+ * needed are dropped by the next update of their context. When nothing is
+ * pinned, the updates don't touch any shared state.
+ * @author Florent Benoit
+ */
+final class Snapshots {
+
+    /**
+     * Last version.
+     */
+    private static final AtomicLong CLOCK = new AtomicLong();
+
+    /**
+     * Number of pinned snapshots, including the ones being pinned.
+     */
+    private static final AtomicInteger PINNED = new AtomicInteger();
+
+    /**
+     * Number of snapshots whose version is read but which are not yet in
+     * {@link #PINS}.
+     */
+    private static final AtomicInteger PENDING = new AtomicInteger();
+
+    /**
+     * Pinned snapshots, by version.
+     */
+    private static final ConcurrentSkipListSet<PinnedSnapshot> PINS = new ConcurrentSkipListSet<PinnedSnapshot>();
+
+    /**
+     * Identifiers of the snapshots, ordering the snapshots of a same version.
+     */
+    private static final AtomicLong IDS = new AtomicLong();
+
+    /**
+     * Snapshot used by the current thread.
+     */
+    private static final ThreadLocal<PinnedSnapshot> CURRENT = new ThreadLocal<PinnedSnapshot>();
+
+    /**
+     * Utility class.
+     */
+    private Snapshots() {
+    }
+
+    /**
+     * Starts an update of the given context.
+     * {@link #endUpdate(ContextImpl, long)} must be called with the returned
+     * value once the update is applied.
+     * Must be called while holding the lock of the context.
+     * @param context the updated context
+     * @return the version of the update if the previous object has to be kept, else 0
+     */
+    static long beginUpdate(final ContextImpl context) {
+        // recorded before checking the snapshots: a snapshot pinned from now
+        // sees this update in progress
+        context.setApplying(ContextImpl.UNVERSIONED);
+        if (PINNED.get() == 0) {
+            return 0L;
+        }
+        long version = CLOCK.incrementAndGet();
+        context.setApplying(version);
+        return version;
+    }
+
+    /**
+     * Ends an update and drops the previous objects of the context that are
+     * no longer needed.
+     * Must be called while holding the lock of the context.
+     * @param context the updated context
+     * @param version the value returned by {@link #beginUpdate(ContextImpl)}
+     */
+    static void endUpdate(final ContextImpl context, final long version) {
+        context.setApplying(0L);
+        if (context.hasHistory()) {
+            long oldest = oldestNeeded();
+            if (oldest >= 0) {
+                context.pruneHistory(oldest);
+            }
+        }
+    }
+
+    /**
+     * Gets the version to use by the lookups of the current thread.
+     * @return the pinned version or -1 if the current bindings are used
+     */
+    static long currentVersion() {
+        if (PINNED.get() == 0) {
+            return -1L;
+        }
+        PinnedSnapshot snapshot = CURRENT.get();
+        while (snapshot != null && snapshot.isClosed()) {
+            snapshot = snapshot.previous;
+        }
+        if (snapshot == null) {
+            return -1L;
+        }
+        return snapshot.getVersion();
+    }
+
+    /**
+     * Pins the last version for the current thread. It doesn't wait for the
+     * updates being applied.
+     * @return the snapshot
+     */
+    static NamingSnapshot pin() {
+        PINNED.incrementAndGet();
+        PENDING.incrementAndGet();
+        PinnedSnapshot snapshot;
+        try {
+            snapshot = new PinnedSnapshot(CLOCK.get(), IDS.incrementAndGet(), CURRENT.get());
+            PINS.add(snapshot);
+        } finally {
+            PENDING.decrementAndGet();
+        }
+        CURRENT.set(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Releases a pinned snapshot. The previous objects it needed are dropped
+     * by the next updates of their contexts.
+     * @param snapshot the snapshot
+     */
+    private static void unpin(final PinnedSnapshot snapshot) {
+        PINS.remove(snapshot);
+        PINNED.decrementAndGet();
+    }
+
+    /**
+     * Gets the version before which the previous objects are no longer needed.
+     * @return the oldest pinned version, the last version if nothing is
+     *         pinned, or -1 if a snapshot is being pinned (it prunes once released)
+     */
+    private static long oldestNeeded() {
+        // read in this order: a snapshot pinned after the check of the
+        // pending ones gets a version at least equal to the last one
+        long oldest = CLOCK.get();
+        if (PENDING.get() > 0) {
+            return -1L;
+        }
+        PinnedSnapshot first = null;
+        if (!PINS.isEmpty()) {
+            try {
+                first = PINS.first();
+            } catch (NoSuchElementException e) {
+                first = null;
+            }
+        }
+        if (first != null && first.getVersion() < oldest) {
+            oldest = first.getVersion();
+        }
+        return oldest;
+    }
+
+    /**
+     * Version pinned by a thread.
+     * @author Florent Benoit
+     */
+    private static final class PinnedSnapshot implements NamingSnapshot, Comparable<PinnedSnapshot> {
+
+        /**
+         * The pinned version.
+         */
+        private final long version;
+
+        /**
+         * Identifier of this snapshot.
+         */
+        private final long id;
+
+        /**
+         * Snapshot used by the thread before this one.
+         */
+        private final PinnedSnapshot previous;
+
+        /**
+         * Is this snapshot released ?
+         */
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        /**
+         * Constructor.
+         * @param version the pinned version
+         * @param id the identifier of this snapshot
+         * @param previous the snapshot used by the thread before this one
+         */
+        public PinnedSnapshot(final long version, final long id, final PinnedSnapshot previous) {
+            this.version = version;
+            this.id = id;
+            this.previous = previous;
+        }
+
+        /**
+         * @return the pinned version
+         */
+        @Override
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Orders the snapshots by version.
+         * @param other the other snapshot
+         * @return the comparison of the versions, then of the identifiers
+         */
+        @Override
+        public int compareTo(final PinnedSnapshot other) {
+            if (version != other.version) {
+                return version < other.version ? -1 : 1;
+            }
+            if (id != other.id) {
+                return id < other.id ? -1 : 1;
+            }
+            return 0;
+        }
+
+        /**
+         * @return true if this snapshot is released
+         */
+        public boolean isClosed() {
+            return closed.get();
+        }
+
+        /**
+         * Releases this snapshot.
+         */
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            if (CURRENT.get() == this) {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+            unpin(this);
+        }
+    }
+
+}
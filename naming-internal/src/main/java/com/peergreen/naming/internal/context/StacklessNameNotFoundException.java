@@ -0,0 +1,51 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal.context;
+
+import javax.naming.NameNotFoundException;
+
+/**
+ * NameNotFoundException without stack trace. Filling the stack trace is the
+ * main cost of a failed lookup and it is useless for names that are expected
+ * to be missing.
+ * @author Florent Benoit
+ */
+final class StacklessNameNotFoundException extends NameNotFoundException {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = -3126870153216425542L;
+
+    /**
+     * Constructor.
+     * @param explanation the message of the exception
+     */
+    StacklessNameNotFoundException(final String explanation) {
+        super(explanation);
+    }
+
+    /**
+     * Doesn't fill the stack trace.
+     * @return this exception
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+}
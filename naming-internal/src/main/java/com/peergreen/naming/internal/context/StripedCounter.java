@@ -0,0 +1,88 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming.internal.context;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter spread over several cells, so that the threads updating it
+ * concurrently don't write the same cache line. Each thread always uses the
+ * same cell and reading the value sums all the cells.
+ * @author Florent Benoit
+ */
+final class StripedCounter {
+
+    /**
+     * Number of longs between two cells (a cache line).
+     */
+    private static final int PADDING = 8;
+
+    /**
+     * Maximum number of cells.
+     */
+    private static final int MAX_CELLS = 64;
+
+    /**
+     * Number of cells (power of two, at least the number of processors).
+     */
+    private static final int CELLS = cells();
+
+    /**
+     * The cells, one every {@link #PADDING} longs.
+     */
+    private final AtomicLongArray cells = new AtomicLongArray(CELLS * PADDING);
+
+    /**
+     * @return the number of cells to use
+     */
+    private static int cells() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int count = 1;
+        while (count < processors && count < MAX_CELLS) {
+            count <<= 1;
+        }
+        return count;
+    }
+
+    /**
+     * @return the index of the cell of the current thread
+     */
+    private static int index() {
+        long id = Thread.currentThread().getId();
+        // spread the consecutive ids
+        int hash = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+        return (hash & (CELLS - 1)) * PADDING;
+    }
+
+    /**
+     * Adds one.
+     */
+    void increment() {
+        cells.incrementAndGet(index());
+    }
+
+    /**
+     * @return the sum of the cells
+     */
+    long sum() {
+        long sum = 0L;
+        for (int i = 0; i < CELLS; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.peergreen.naming.internal.context;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of the objects found in a wrapped context. The entries
+ * expire after a given time. When the cache is full, the least recently
+ * used entry among a few sampled ones is evicted, so that the reads never
+ * take a lock. The samples are taken at a position moving over the whole
+ * cache, so that every entry is eventually compared. Missing names are
+ * never cached.
+ * @author Florent Benoit
+ */
+final class WrappedContextCache {
+
+    /**
+     * Number of entries compared to find the one to evict.
+     */
+    private static final int EVICTION_SAMPLES = 8;
+
+    /**
+     * Minimum time between two updates of the access time of an entry, so
+     * that the lookups of a popular name don't all write it (in nanoseconds).
+     */
+    private static final long ACCESS_PRECISION = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    /**
+     * Cached objects.
+     */
+    private final ConcurrentMap<String, CachedObject> entries;
+
+    /**
+     * Maximum number of entries.
+     */
+    private final int maxSize;
+
+    /**
+     * Time to live of an entry, in nanoseconds.
+     */
+    private final long timeToLive;
+
+    /**
+     * Lock of the evictions.
+     */
+    private final Object evictionLock = new Object();
+
+    /**
+     * Position of the next sampled entries (guarded by {@link #evictionLock}).
+     */
+    private Iterator<Map.Entry<String, CachedObject>> hand = null;
+
+    /**
+     * Constructor.
+     * @param maxSize the maximum number of entries
+     * @param timeToLive the time to live of an entry
+     * @param unit the unit of the time to live
+     */
+    WrappedContextCache(final int maxSize, final long timeToLive, final TimeUnit unit) {
+        this.maxSize = maxSize;
+        this.timeToLive = unit.toNanos(timeToLive);
+        this.entries = new ConcurrentHashMap<String, CachedObject>();
+    }
+
+    /**
+     * Gets the object found for the given name.
+     * @param name the name
+     * @return the object or null if it is not cached or if it has expired
+     */
+    Object get(final String name) {
+        CachedObject entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - entry.created > timeToLive) {
+            entries.remove(name, entry);
+            return null;
+        }
+        if (now - entry.accessed > ACCESS_PRECISION) {
+            entry.accessed = now;
+        }
+        return entry.object;
+    }
+
+    /**
+     * Adds the object found for the given name.
+     * @param name the name
+     * @param object the object (not cached if null)
+     */
+    void put(final String name, final Object object) {
+        if (object == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (entries.put(name, new CachedObject(object, now)) == null) {
+            while (entries.size() > maxSize) {
+                evict(now);
+            }
+        }
+    }
+
+    /**
+     * Removes an expired entry or the least recently used one among the
+     * next sampled entries.
+     * @param now the current time, in nanoseconds
+     */
+    private void evict(final long now) {
+        synchronized (evictionLock) {
+            Map.Entry<String, CachedObject> eldest = null;
+            for (int i = 0; i < EVICTION_SAMPLES; i++) {
+                if (hand == null || !hand.hasNext()) {
+                    // start again from the beginning
+                    hand = entries.entrySet().iterator();
+                    if (!hand.hasNext()) {
+                        break;
+                    }
+                }
+                Map.Entry<String, CachedObject> entry = hand.next();
+                if (now - entry.getValue().created > timeToLive) {
+                    eldest = entry;
+                    break;
+                }
+                if (eldest == null || entry.getValue().accessed - eldest.getValue().accessed < 0) {
+                    eldest = entry;
+                }
+            }
+            if (eldest != null) {
+                entries.remove(eldest.getKey(), eldest.getValue());
+            }
+        }
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Cached object with its creation and last access times.
+     * @author Florent Benoit
+     */
+    private static final class CachedObject {
+
+        /**
+         * The cached object.
+         */
+        private final Object object;
+
+        /**
+         * Creation time, in nanoseconds.
+         */
+        private final long created;
+
+        /**
+         * Last access time, in nanoseconds.
+         */
+        private volatile long accessed;
+
+        /**
+         * Constructor.
+         * @param object the cached object
+         * @param created the creation time
+         */
+        CachedObject(final Object object, final long created) {
+            this.object = object;
+            this.created = created;
+            this.accessed = created;
+        }
+    }
+
+}
@@ -0,0 +1,334 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming.internal;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.naming.Context;
+import javax.naming.event.EventContext;
+import javax.naming.event.NamespaceChangeListener;
+import javax.naming.event.NamingEvent;
+import javax.naming.event.NamingExceptionEvent;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.peergreen.naming.ContextPropagatingExecutorService;
+import com.peergreen.naming.ContextPropagation;
+import com.peergreen.naming.ContextScope;
+import com.peergreen.naming.internal.context.ContextImpl;
+
+/**
+ * Checks the scopes of the thread contexts and their propagation to other
+ * threads.
+ * @author Florent Benoit
+ */
+public class DefaultJavaNamingManagerTest {
+
+    /**
+     * The tested manager.
+     */
+    private DefaultJavaNamingManager javaNamingManager;
+
+    /**
+     * Creates the manager.
+     */
+    @BeforeMethod
+    public void createManager() {
+        this.javaNamingManager = new DefaultJavaNamingManager();
+    }
+
+    /**
+     * Closes the scopes left by a failed test.
+     */
+    @AfterMethod
+    public void closeScopes() {
+        while (javaNamingManager.getActiveContext() != null) {
+            javaNamingManager.unbindThreadContext();
+        }
+    }
+
+    /**
+     * Closing a scope restores the previous one, and closing an outer scope
+     * also closes the scopes opened after it.
+     */
+    @Test
+    public void testNestedScopes() {
+        Context first = new ContextImpl("first");
+        Context second = new ContextImpl("second");
+        Assert.assertNull(javaNamingManager.getActiveContext());
+        ContextScope outer = javaNamingManager.openScope(first);
+        ContextScope inner = javaNamingManager.openScope(second);
+        Assert.assertSame(javaNamingManager.getActiveContext(), second);
+        inner.close();
+        Assert.assertSame(javaNamingManager.getActiveContext(), first);
+        inner = javaNamingManager.openScope(second);
+        outer.close();
+        Assert.assertNull(javaNamingManager.getActiveContext());
+        inner.close();
+        Assert.assertNull(javaNamingManager.getActiveContext());
+    }
+
+    /**
+     * The tasks run with the context active when they are submitted, or
+     * with no context if none was active.
+     * @throws Exception if the test fails
+     */
+    @Test(timeOut = 60000)
+    public void testExecutorPropagation() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            // the thread of the pool is created without context
+            executorService.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+            ExecutorService propagating = new ContextPropagatingExecutorService(javaNamingManager, executorService);
+            Callable<Context> probe = new Callable<Context>() {
+                @Override
+                public Context call() {
+                    return javaNamingManager.getActiveContext();
+                }
+            };
+            Context context = new ContextImpl("test");
+            ContextScope scope = javaNamingManager.openScope(context);
+            try {
+                Assert.assertSame(propagating.submit(probe).get(), context);
+            } finally {
+                scope.close();
+            }
+            Assert.assertNull(propagating.submit(probe).get());
+            // the placeholder is still returned when no context is active
+            Assert.assertTrue(javaNamingManager.getContext() instanceof JavaURLContext);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * The checked exceptions of the tasks are given unchanged to the
+     * submitter.
+     * @throws Exception if the test fails
+     */
+    @Test(timeOut = 60000)
+    public void testExecutorCheckedException() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            ExecutorService propagating = new ContextPropagatingExecutorService(javaNamingManager, executorService);
+            final IOException failure = new IOException("Task has failed");
+            try {
+                propagating.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws IOException {
+                        throw failure;
+                    }
+                }).get();
+                Assert.fail("Task has not failed");
+            } catch (ExecutionException e) {
+                Assert.assertSame(e.getCause(), failure);
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * The tasks still waiting when the executor is stopped are returned as
+     * they have been submitted.
+     * @throws Exception if the test fails
+     */
+    @Test(timeOut = 60000)
+    public void testExecutorShutdownNow() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        ExecutorService propagating = new ContextPropagatingExecutorService(javaNamingManager, executorService);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        propagating.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Runnable waiting = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        started.await();
+        propagating.execute(waiting);
+        List<Runnable> tasks = propagating.shutdownNow();
+        Assert.assertEquals(tasks.size(), 1);
+        Assert.assertSame(tasks.get(0), waiting);
+        Assert.assertTrue(propagating.awaitTermination(10L, TimeUnit.SECONDS));
+    }
+
+    /**
+     * The created threads inherit the scope of their creator unless the
+     * propagation is explicit.
+     * @throws Exception if the test fails
+     */
+    @Test(timeOut = 60000)
+    public void testInheritedScopes() throws Exception {
+        Context context = new ContextImpl("test");
+        ContextScope scope = javaNamingManager.openScope(context);
+        try {
+            Assert.assertSame(getActiveContextInNewThread(), context);
+        } finally {
+            scope.close();
+        }
+        javaNamingManager.setContextPropagation(ContextPropagation.EXPLICIT);
+        scope = javaNamingManager.openScope(context);
+        try {
+            Assert.assertSame(javaNamingManager.getActiveContext(), context);
+            Assert.assertNull(getActiveContextInNewThread());
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * The context of a classloader is found for its child classloaders.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testClassLoaderContext() throws Exception {
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        ClassLoader parent = new URLClassLoader(new URL[0], previous);
+        ClassLoader child = new URLClassLoader(new URL[0], parent);
+        Context context = new ContextImpl("test");
+        Thread.currentThread().setContextClassLoader(child);
+        try {
+            javaNamingManager.bindClassLoaderContext(parent, context);
+            Assert.assertSame(javaNamingManager.getActiveContext(), context);
+            javaNamingManager.unbindClassLoaderContext(parent);
+            Assert.assertNull(javaNamingManager.getActiveContext());
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+    }
+
+    /**
+     * An unknown propagation property doesn't prevent the manager to be
+     * created.
+     */
+    @Test
+    public void testUnknownPropagationProperty() {
+        String previous = System.getProperty(ContextPropagation.PROPERTY);
+        System.setProperty(ContextPropagation.PROPERTY, "unknown");
+        try {
+            Assert.assertEquals(new DefaultJavaNamingManager().getContextPropagation(), ContextPropagation.INHERIT);
+            System.setProperty(ContextPropagation.PROPERTY, "explicit");
+            Assert.assertEquals(new DefaultJavaNamingManager().getContextPropagation(),
+                    ContextPropagation.EXPLICIT);
+        } finally {
+            if (previous == null) {
+                System.clearProperty(ContextPropagation.PROPERTY);
+            } else {
+                System.setProperty(ContextPropagation.PROPERTY, previous);
+            }
+        }
+    }
+
+    /**
+     * The listeners are notified by a thread without the classloader and
+     * the scope of the thread starting the manager, and stopped with it.
+     * @throws Exception if the test fails
+     */
+    @Test(timeOut = 60000)
+    public void testEventThread() throws Exception {
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        ContextScope scope = javaNamingManager.openScope(new ContextImpl("application"));
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[0], previous));
+        try {
+            javaNamingManager.start();
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+            scope.close();
+        }
+        final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+        final AtomicReference<ClassLoader> classLoader = new AtomicReference<ClassLoader>();
+        final AtomicReference<Context> active = new AtomicReference<Context>();
+        final CountDownLatch notified = new CountDownLatch(1);
+        try {
+            EventContext context = new ContextImpl("test");
+            context.addNamingListener("", EventContext.ONELEVEL_SCOPE, new NamespaceChangeListener() {
+                @Override
+                public void objectAdded(final NamingEvent event) {
+                    thread.set(Thread.currentThread());
+                    classLoader.set(Thread.currentThread().getContextClassLoader());
+                    active.set(javaNamingManager.getActiveContext());
+                    notified.countDown();
+                }
+
+                @Override
+                public void objectRemoved(final NamingEvent event) {
+                }
+
+                @Override
+                public void objectRenamed(final NamingEvent event) {
+                }
+
+                @Override
+                public void namingExceptionThrown(final NamingExceptionEvent event) {
+                }
+            });
+            context.bind("x", "value");
+            Assert.assertTrue(notified.await(10L, TimeUnit.SECONDS));
+            Assert.assertNotSame(thread.get(), Thread.currentThread());
+            Assert.assertNull(classLoader.get());
+            Assert.assertNull(active.get());
+        } finally {
+            javaNamingManager.stop();
+        }
+        thread.get().join();
+    }
+
+    /**
+     * @return the context active in a thread created by the current thread
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private Context getActiveContextInNewThread() throws InterruptedException {
+        final AtomicReference<Context> active = new AtomicReference<Context>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                active.set(javaNamingManager.getActiveContext());
+            }
+        };
+        thread.start();
+        thread.join();
+        return active.get();
+    }
+
+}
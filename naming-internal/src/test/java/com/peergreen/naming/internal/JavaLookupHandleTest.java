@@ -0,0 +1,134 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming.internal;
+
+import java.lang.ref.WeakReference;
+
+import javax.naming.Context;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.peergreen.naming.ContextScope;
+import com.peergreen.naming.LookupHandle;
+import com.peergreen.naming.internal.context.ContextImpl;
+
+/**
+ * Checks the handles of the java: names shared by several contexts.
+ * @author Florent Benoit
+ */
+public class JavaLookupHandleTest {
+
+    /**
+     * Maximum number of garbage collections waiting for a context to be reclaimed.
+     */
+    private static final int MAX_COLLECTIONS = 50;
+
+    /**
+     * @param value the object bound in the context
+     * @return a new context with java:comp/env/x bound
+     * @throws Exception if the context can't be created
+     */
+    private static Context newContext(final Object value) throws Exception {
+        Context context = new ContextImpl("test");
+        context.createSubcontext("comp");
+        context.createSubcontext("comp/env");
+        context.bind("comp/env/x", value);
+        return context;
+    }
+
+    /**
+     * A handle looks up the name in the current context of each call.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testSharedHandle() throws Exception {
+        DefaultJavaNamingManager javaNamingManager = new DefaultJavaNamingManager();
+        LookupHandle handle = javaNamingManager.compile("java:comp/env/x");
+        for (String value : new String[] {"first", "second", "first"}) {
+            ContextScope scope = javaNamingManager.openScope(newContext(value));
+            try {
+                Assert.assertEquals(handle.lookup(), value);
+            } finally {
+                scope.close();
+            }
+        }
+    }
+
+    /**
+     * The handle finds the new objects once the contexts of the name are
+     * replaced, including in a tree bound from another one.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testChangedStructure() throws Exception {
+        DefaultJavaNamingManager javaNamingManager = new DefaultJavaNamingManager();
+        LookupHandle handle = javaNamingManager.compile("java:comp/env/x");
+        Context context = new ContextImpl("test");
+        Context comp = newContext("first");
+        context.bind("comp", comp.lookup("comp"));
+        ContextScope scope = javaNamingManager.openScope(context);
+        try {
+            Assert.assertEquals(handle.lookup(), "first");
+            // replaced in the bound tree
+            comp.destroySubcontext("comp/env");
+            comp.createSubcontext("comp/env").bind("x", "second");
+            Assert.assertEquals(handle.lookup(), "second");
+            // replaced in the tree of the current context
+            context.rebind("comp", newContext("third").lookup("comp"));
+            Assert.assertEquals(handle.lookup(), "third");
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * A handle doesn't keep the contexts it has been used with.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testContextNotKept() throws Exception {
+        DefaultJavaNamingManager javaNamingManager = new DefaultJavaNamingManager();
+        LookupHandle handle = javaNamingManager.compile("java:comp/env/x");
+        WeakReference<Context> reference = lookupInNewContext(javaNamingManager, handle);
+        for (int i = 0; i < MAX_COLLECTIONS && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        Assert.assertNull(reference.get(), "Context kept by the handle");
+        Assert.assertEquals(handle.getName(), "java:comp/env/x");
+    }
+
+    /**
+     * Uses the given handle with a new context.
+     * @param javaNamingManager the manager of the context
+     * @param handle the handle
+     * @return a weak reference to the context
+     * @throws Exception if the lookup fails
+     */
+    private static WeakReference<Context> lookupInNewContext(final DefaultJavaNamingManager javaNamingManager,
+            final LookupHandle handle) throws Exception {
+        Context context = newContext("value");
+        ContextScope scope = javaNamingManager.openScope(context);
+        try {
+            Assert.assertEquals(handle.lookup(), "value");
+        } finally {
+            scope.close();
+        }
+        return new WeakReference<Context>(context);
+    }
+
+}
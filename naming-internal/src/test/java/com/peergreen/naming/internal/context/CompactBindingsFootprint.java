@@ -0,0 +1,131 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming.internal.context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures the heap used by the bindings of small contexts, compared to the
+ * hash table used before {@link CompactBindings}. The measure depends on
+ * the garbage collector so it is not part of the tests: it is run with its
+ * main method.
+ * @author Florent Benoit
+ */
+public final class CompactBindingsFootprint {
+
+    /**
+     * Number of contexts measured.
+     */
+    private static final int CONTEXTS = 20000;
+
+    /**
+     * Number of bindings of each context (like a java:comp/env context).
+     */
+    private static final int BINDINGS = 4;
+
+    /**
+     * Number of measures of each kind of bindings.
+     */
+    private static final int ROUNDS = 5;
+
+    /**
+     * Names of the bindings, shared by all the contexts.
+     */
+    private static final String[] NAMES = {"comp", "module", "app", "env"};
+
+    /**
+     * Utility class.
+     */
+    private CompactBindingsFootprint() {
+    }
+
+    /**
+     * Prints the smallest heap used by the bindings of a context over
+     * several measures.
+     * @param args not used
+     */
+    public static void main(final String[] args) {
+        BindingsFactory compact = new BindingsFactory() {
+            @Override
+            public Map<String, Object> create() {
+                return new CompactBindings();
+            }
+        };
+        BindingsFactory hashTable = new BindingsFactory() {
+            @Override
+            public Map<String, Object> create() {
+                return new ConcurrentHashMap<String, Object>();
+            }
+        };
+        long compactBytes = Long.MAX_VALUE;
+        long hashTableBytes = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            compactBytes = Math.min(compactBytes, footprint(compact));
+            hashTableBytes = Math.min(hashTableBytes, footprint(hashTable));
+        }
+        System.out.println("Bindings of a context with " + BINDINGS + " names: " + compactBytes
+                + " bytes (compact), " + hashTableBytes + " bytes (hash table)");
+    }
+
+    /**
+     * Gets the heap used by the bindings of a context.
+     * @param factory the factory of the bindings
+     * @return the number of bytes used by each context
+     */
+    private static long footprint(final BindingsFactory factory) {
+        List<Map<String, Object>> contexts = new ArrayList<Map<String, Object>>(CONTEXTS);
+        long before = usedHeap();
+        for (int i = 0; i < CONTEXTS; i++) {
+            Map<String, Object> bindings = factory.create();
+            for (int j = 0; j < BINDINGS; j++) {
+                bindings.put(NAMES[j], Boolean.TRUE);
+            }
+            contexts.add(bindings);
+        }
+        long after = usedHeap();
+        if (contexts.size() != CONTEXTS) {
+            throw new IllegalStateException("Contexts have been lost");
+        }
+        return (after - before) / CONTEXTS;
+    }
+
+    /**
+     * @return the heap used once the garbage has been collected
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Creates the bindings of a context.
+     * @author Florent Benoit
+     */
+    private interface BindingsFactory {
+
+        /**
+         * @return new empty bindings
+         */
+        Map<String, Object> create();
+    }
+
+}
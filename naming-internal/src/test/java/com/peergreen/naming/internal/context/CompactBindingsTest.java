@@ -0,0 +1,77 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming.internal.context;
+
+import javax.naming.CompositeName;
+import javax.naming.NameNotFoundException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks the bindings of the contexts, compact while they are small.
+ * @author Florent Benoit
+ */
+public class CompactBindingsTest {
+
+    /**
+     * Number of names looked up.
+     */
+    private static final int NAMES = 20000;
+
+    /**
+     * A context switches to a hash table once it has too many bindings and
+     * it still finds all of them.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testGrowingContext() throws Exception {
+        ContextImpl context = new ContextImpl("test");
+        int count = CompactBindings.MAX_SIZE * 2;
+        for (int i = 0; i < count; i++) {
+            context.bind("name" + i, Integer.valueOf(i));
+        }
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(context.lookup("name" + i), Integer.valueOf(i));
+        }
+    }
+
+    /**
+     * The components of the names that are only looked up are not added to
+     * the shared components, while the bound ones are shared by the lookups.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testLookedUpNamesNotShared() throws Exception {
+        ContextImpl context = new ContextImpl("test");
+        context.createSubcontext("shared");
+        int size = Segments.size();
+        for (int i = 0; i < NAMES; i++) {
+            try {
+                context.lookup("shared/missing" + i);
+                Assert.fail("Name 'missing" + i + "' has been found");
+            } catch (NameNotFoundException e) {
+                // expected
+            }
+        }
+        Assert.assertEquals(Segments.size(), size);
+        String name = new String("missing0");
+        context.bind(new CompositeName().add("shared").add(name), Boolean.TRUE);
+        Assert.assertSame(Segments.find("missing0"), name);
+        Assert.assertEquals(context.lookup("shared/missing0"), Boolean.TRUE);
+    }
+
+}
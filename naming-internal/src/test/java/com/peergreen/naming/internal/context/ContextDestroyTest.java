@@ -0,0 +1,194 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming.internal.context;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.Context;
+import javax.naming.Name;
+import javax.naming.NameNotFoundException;
+import javax.naming.OperationNotSupportedException;
+import javax.naming.Reference;
+import javax.naming.spi.ObjectFactory;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks the destruction of the contexts and the release of their objects.
+ * @author Florent Benoit
+ */
+public class ContextDestroyTest {
+
+    /**
+     * Number of subcontexts of the destroyed trees.
+     */
+    private static final int TREES = 16;
+
+    /**
+     * Destroying a context detaches its whole tree and closes once the
+     * shared objects built from its references.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testDestroySubcontext() throws Exception {
+        Hashtable<Object, Object> env = new Hashtable<Object, Object>();
+        env.put(ContextImpl.CACHE_REFERENCES, "true");
+        ContextImpl context = new ContextImpl("test", env);
+        Context subcontext = context.createSubcontext("a");
+        context.createSubcontext("a/b");
+        context.bind("a/b/resource", new Reference(Resource.class.getName(), ResourceFactory.class.getName(),
+                null));
+        Resource resource = (Resource) context.lookup("a/b/resource");
+        Assert.assertSame(context.lookup("a/b/resource"), resource);
+
+        context.destroySubcontext("a");
+        Assert.assertEquals(resource.getClosed(), 1);
+        try {
+            context.lookup("a/b/resource");
+            Assert.fail("Destroyed context has been found");
+        } catch (NameNotFoundException e) {
+            // expected
+        }
+        try {
+            subcontext.lookup("b");
+            Assert.fail("Destroyed context still has bindings");
+        } catch (NameNotFoundException e) {
+            // expected
+        }
+    }
+
+    /**
+     * A sealed context stays sealed once destroyed.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testDestroySealedContext() throws Exception {
+        ContextImpl context = new ContextImpl("test");
+        ContextImpl subcontext = (ContextImpl) context.createSubcontext("a");
+        subcontext.bind("x", "value");
+        subcontext.seal();
+        context.destroySubcontext("a");
+        Assert.assertTrue(subcontext.isSealed());
+        try {
+            subcontext.bind("y", "value");
+            Assert.fail("Destroyed sealed context has been modified");
+        } catch (OperationNotSupportedException e) {
+            // expected
+        }
+    }
+
+    /**
+     * The contexts are released by the pool of the naming component when
+     * the parallel destroy is enabled, and by the current thread without
+     * pool.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testParallelDestroy() throws Exception {
+        Hashtable<Object, Object> env = new Hashtable<Object, Object>();
+        env.put(ContextImpl.CACHE_REFERENCES, "true");
+        env.put(ContextImpl.PARALLEL_DESTROY, "true");
+        ForkJoinPool pool = new ForkJoinPool();
+        ContextImpl.setDestroyPool(pool);
+        try {
+            Assert.assertEquals(destroyTree(env), TREES);
+            ContextImpl.setDestroyPool(null);
+            Assert.assertEquals(destroyTree(env), TREES);
+        } finally {
+            ContextImpl.setDestroyPool(null);
+            pool.shutdown();
+        }
+        Assert.assertTrue(pool.awaitTermination(10L, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Destroys a tree with a resource in each of its subcontexts.
+     * @param env the environment of the tree
+     * @return the number of closed resources
+     * @throws Exception if the tree can't be built or destroyed
+     */
+    private static int destroyTree(final Hashtable<Object, Object> env) throws Exception {
+        ContextImpl context = new ContextImpl("test", env);
+        List<Resource> resources = new ArrayList<Resource>();
+        for (int i = 0; i < TREES; i++) {
+            String name = "a/b" + i + "/resource";
+            context.createSubcontext("a/b" + i);
+            context.bind(name, new Reference(Resource.class.getName(), ResourceFactory.class.getName(), null));
+            resources.add((Resource) context.lookup(name));
+        }
+        context.destroySubcontext("a");
+        int closed = 0;
+        for (Resource resource : resources) {
+            closed += resource.getClosed();
+        }
+        return closed;
+    }
+
+    /**
+     * Object built by {@link ResourceFactory}, counting its closes.
+     * @author Florent Benoit
+     */
+    public static class Resource implements AutoCloseable {
+
+        /**
+         * Number of closes.
+         */
+        private final AtomicInteger closed = new AtomicInteger();
+
+        /**
+         * @return the number of closes
+         */
+        public int getClosed() {
+            return closed.get();
+        }
+
+        /**
+         * Closes this resource.
+         */
+        @Override
+        public void close() {
+            closed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Builds a new {@link Resource} for each reference.
+     * @author Florent Benoit
+     */
+    public static class ResourceFactory implements ObjectFactory {
+
+        /**
+         * Builds a resource.
+         * @param obj the reference
+         * @param name the name of the binding
+         * @param nameCtx the context of the binding
+         * @param environment the environment of the context
+         * @return a new resource
+         */
+        @Override
+        public Object getObjectInstance(final Object obj, final Name name, final Context nameCtx,
+                final Hashtable<?, ?> environment) {
+            return new Resource();
+        }
+    }
+
+}
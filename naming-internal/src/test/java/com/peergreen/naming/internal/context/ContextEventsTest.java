@@ -0,0 +1,169 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming.internal.context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.event.EventContext;
+import javax.naming.event.NamespaceChangeListener;
+import javax.naming.event.NamingEvent;
+import javax.naming.event.NamingExceptionEvent;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks the events sent to the listeners of a subtree, including the
+ * changes done by batches and the events coalesced by the dispatcher.
+ * @author Florent Benoit
+ */
+public class ContextEventsTest {
+
+    /**
+     * Maximum time to wait for an event, in seconds.
+     */
+    private static final long TIMEOUT = 10L;
+
+    /**
+     * The subcontexts created by a batch are notified before their own
+     * bindings.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testSubtreeEventsOfBatch() throws Exception {
+        ContextImpl context = new ContextImpl("test");
+        context.createSubcontext("a");
+        RecordingListener listener = new RecordingListener();
+        context.addNamingListener("", EventContext.SUBTREE_SCOPE, listener);
+        Map<String, Object> bindings = new LinkedHashMap<String, Object>();
+        bindings.put("a/n/x", "x");
+        bindings.put("a/n/y", "y");
+        bindings.put("a/q", "q");
+        Assert.assertTrue(context.bindAll(bindings).isEmpty());
+        context.rename("a/q", "a/r");
+        List<String> events = listener.await(5);
+        Assert.assertEquals(new HashSet<String>(events.subList(0, 4)), new HashSet<String>(Arrays.asList(
+                "add a/n", "add a/n/x", "add a/n/y", "add a/q")));
+        Assert.assertTrue(events.indexOf("add a/n") < events.indexOf("add a/n/x"), events.toString());
+        Assert.assertTrue(events.indexOf("add a/n") < events.indexOf("add a/n/y"), events.toString());
+        Assert.assertEquals(events.get(4), "mv a/q->a/r");
+    }
+
+    /**
+     * A name added then removed is not cancelled when it has been renamed
+     * in between.
+     * @throws Exception if the test fails
+     */
+    @Test(invocationCount = 20)
+    public void testRenamesAreNotCoalesced() throws Exception {
+        ContextImpl context = new ContextImpl("test");
+        RecordingListener listener = new RecordingListener();
+        context.addNamingListener("", EventContext.ONELEVEL_SCOPE, listener);
+        context.bind("x", "value");
+        context.rename("x", "y");
+        context.rename("y", "x");
+        context.unbind("x");
+        Assert.assertEquals(listener.await(4), Arrays.asList("add x", "mv x->y", "mv y->x", "rm x"));
+    }
+
+    /**
+     * A listener throwing an exception is told about it and still receives
+     * the next events.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testFailingListener() throws Exception {
+        ContextImpl context = new ContextImpl("test");
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            public void objectAdded(final NamingEvent event) {
+                super.objectAdded(event);
+                if ("failing".equals(event.getNewBinding().getName())) {
+                    throw new IllegalStateException("Listener has failed");
+                }
+            }
+        };
+        context.addNamingListener("", EventContext.ONELEVEL_SCOPE, listener);
+        context.bind("failing", "value");
+        context.bind("next", "value");
+        Assert.assertEquals(listener.await(3), Arrays.asList("add failing",
+                "error java.lang.IllegalStateException: Listener has failed", "add next"));
+    }
+
+    /**
+     * Records the received events.
+     * @author Florent Benoit
+     */
+    private static class RecordingListener implements NamespaceChangeListener {
+
+        /**
+         * The received events.
+         */
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<String>();
+
+        /**
+         * Waits for the given number of events.
+         * @param count the number of events
+         * @return the events
+         * @throws InterruptedException if the thread is interrupted
+         */
+        public List<String> await(final int count) throws InterruptedException {
+            List<String> received = new ArrayList<String>();
+            while (received.size() < count) {
+                String event = events.poll(TIMEOUT, TimeUnit.SECONDS);
+                if (event == null) {
+                    Assert.fail("Only " + received + " have been received");
+                }
+                received.add(event);
+            }
+            // nothing more
+            String event = events.poll(100L, TimeUnit.MILLISECONDS);
+            if (event != null) {
+                received.add(event);
+            }
+            return received;
+        }
+
+        @Override
+        public void objectAdded(final NamingEvent event) {
+            events.add("add " + event.getNewBinding().getName());
+        }
+
+        @Override
+        public void objectRemoved(final NamingEvent event) {
+            events.add("rm " + event.getOldBinding().getName());
+        }
+
+        @Override
+        public void objectRenamed(final NamingEvent event) {
+            events.add("mv " + event.getOldBinding().getName() + "->" + event.getNewBinding().getName());
+        }
+
+        @Override
+        public void namingExceptionThrown(final NamingExceptionEvent event) {
+            events.add("error " + event.getException().getRootCause());
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming.internal.context;
+
+import javax.naming.Context;
+import javax.naming.InvalidNameException;
+import javax.naming.NameClassPair;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks the names resolved by the contexts.
+ * @author Florent Benoit
+ */
+public class ContextNamesTest {
+
+    /**
+     * A name ending with an empty component designates its context for the
+     * lookups but can't be updated.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testTrailingEmptyComponent() throws Exception {
+        final ContextImpl context = new ContextImpl("test");
+        Context subcontext = context.createSubcontext("a");
+        context.bind("a/x", "value");
+        Assert.assertSame(context.lookup("a/"), subcontext);
+
+        assertInvalid(new Update() {
+            @Override
+            public void run() throws NamingException {
+                context.bind("a/", "value");
+            }
+        });
+        assertInvalid(new Update() {
+            @Override
+            public void run() throws NamingException {
+                context.bind("b/", "value");
+            }
+        });
+        assertInvalid(new Update() {
+            @Override
+            public void run() throws NamingException {
+                context.rebind("a/", "value");
+            }
+        });
+        assertInvalid(new Update() {
+            @Override
+            public void run() throws NamingException {
+                context.createSubcontext("a/b/");
+            }
+        });
+        assertInvalid(new Update() {
+            @Override
+            public void run() throws NamingException {
+                context.unbind("a/");
+            }
+        });
+        assertInvalid(new Update() {
+            @Override
+            public void run() throws NamingException {
+                context.rename("a/x", "a/");
+            }
+        });
+        assertInvalid(new Update() {
+            @Override
+            public void run() throws NamingException {
+                context.destroySubcontext("a/");
+            }
+        });
+
+        // nothing has been changed
+        Assert.assertSame(context.lookup("a"), subcontext);
+        Assert.assertEquals(context.lookup("a/x"), "value");
+        NamingEnumeration<NameClassPair> names = context.list("a");
+        Assert.assertEquals(names.next().getName(), "x");
+        Assert.assertFalse(names.hasMore());
+    }
+
+    /**
+     * Checks that the given update is rejected.
+     * @param update the update
+     * @throws NamingException if the update fails with another exception
+     */
+    private static void assertInvalid(final Update update) throws NamingException {
+        try {
+            update.run();
+            Assert.fail("Name ending with an empty component has been accepted");
+        } catch (InvalidNameException e) {
+            // expected
+        }
+    }
+
+    /**
+     * An update of a context.
+     * @author Florent Benoit
+     */
+    private interface Update {
+
+        /**
+         * Runs the update.
+         * @throws NamingException if the update fails
+         */
+        void run() throws NamingException;
+    }
+
+}
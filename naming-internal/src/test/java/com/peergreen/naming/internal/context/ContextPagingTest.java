@@ -0,0 +1,105 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming.internal.context;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.naming.Binding;
+import javax.naming.NamingException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.peergreen.naming.BindingsPage;
+
+/**
+ * Checks the pages listing the bindings of a context while other threads
+ * are updating it.
+ * @author Florent Benoit
+ */
+public class ContextPagingTest {
+
+    /**
+     * Duration of the concurrent tests, in milliseconds.
+     */
+    private static final long DURATION = 1000L;
+
+    /**
+     * Number of names that stay bound while paging.
+     */
+    private static final int STABLE_NAMES = 100;
+
+    /**
+     * The pages list each name bound during the whole listing once, in
+     * order, while other names are bound and unbound.
+     * @throws Exception if the test fails
+     */
+    @Test(timeOut = 60000)
+    public void testPagingUnderConcurrentUpdates() throws Exception {
+        final ContextImpl context = new ContextImpl("test");
+        for (int i = 0; i < STABLE_NAMES; i++) {
+            context.bind(String.format("s%03d", Integer.valueOf(i)), Integer.valueOf(i));
+        }
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        Thread updating = new Thread() {
+            @Override
+            public void run() {
+                int i = 0;
+                try {
+                    while (!stop.get()) {
+                        String name = String.format("s%03d-%d", Integer.valueOf(i % STABLE_NAMES),
+                                Integer.valueOf(i));
+                        context.bind(name, Integer.valueOf(i));
+                        context.unbind(name);
+                        i++;
+                    }
+                } catch (NamingException e) {
+                    failure.compareAndSet(null, "Update has failed: " + e);
+                }
+            }
+        };
+        updating.start();
+        long end = System.currentTimeMillis() + DURATION;
+        while (System.currentTimeMillis() < end && failure.get() == null) {
+            int stable = 0;
+            String previous = null;
+            String cursor = null;
+            do {
+                BindingsPage page = context.listBindings("", cursor, 7, "s");
+                for (Binding binding : page.getBindings()) {
+                    String name = binding.getName();
+                    if (previous != null && previous.compareTo(name) >= 0) {
+                        failure.compareAndSet(null, "Name '" + name + "' listed after '" + previous + "'");
+                    }
+                    previous = name;
+                    if (name.indexOf('-') < 0) {
+                        stable++;
+                    }
+                }
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+            if (stable != STABLE_NAMES) {
+                failure.compareAndSet(null, stable + " names listed instead of " + STABLE_NAMES);
+            }
+        }
+        stop.set(true);
+        updating.join();
+        Assert.assertNull(failure.get(), failure.get());
+    }
+
+}
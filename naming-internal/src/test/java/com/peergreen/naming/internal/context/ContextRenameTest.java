@@ -0,0 +1,114 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming.internal.context;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.naming.NameAlreadyBoundException;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.peergreen.naming.NamingSnapshot;
+
+/**
+ * Checks the rename of the bindings, alone and while other threads are
+ * looking them up.
+ * @author Florent Benoit
+ */
+public class ContextRenameTest {
+
+    /**
+     * Duration of the concurrent tests, in milliseconds.
+     */
+    private static final long DURATION = 1000L;
+
+    /**
+     * A rename never replaces the object bound with the new name.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testRenameOverBoundName() throws Exception {
+        ContextImpl context = new ContextImpl("test");
+        context.bind("a", "a1");
+        context.bind("b", "b1");
+        try {
+            context.rename("a", "b");
+            Assert.fail("Bound name has been replaced");
+        } catch (NameAlreadyBoundException e) {
+            // expected
+        }
+        Assert.assertEquals(context.lookup("a"), "a1");
+        Assert.assertEquals(context.lookup("b"), "b1");
+    }
+
+    /**
+     * A context with many bindings shows a renamed object under exactly one
+     * of its names.
+     * @throws Exception if the test fails
+     */
+    @Test(timeOut = 60000)
+    public void testRenameIsAtomic() throws Exception {
+        final ContextImpl context = new ContextImpl("test");
+        for (int i = 0; i < CompactBindings.MAX_SIZE * 2; i++) {
+            context.bind("name" + i, Integer.valueOf(i));
+        }
+        context.bind("a", "value");
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        Thread renaming = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (!stop.get()) {
+                        context.rename("a", "b");
+                        context.rename("b", "a");
+                    }
+                } catch (NamingException e) {
+                    failure.compareAndSet(null, "Rename has failed: " + e);
+                }
+            }
+        };
+        renaming.start();
+        long end = System.currentTimeMillis() + DURATION;
+        while (System.currentTimeMillis() < end && failure.get() == null) {
+            // both names change in a single update: a consistent view
+            // always has exactly one of them
+            try (NamingSnapshot snapshot = ContextImpl.pinSnapshot()) {
+                int found = 0;
+                for (String name : new String[] {"a", "b"}) {
+                    try {
+                        context.lookup(name);
+                        found++;
+                    } catch (NameNotFoundException e) {
+                        // renamed
+                    }
+                }
+                if (found != 1) {
+                    failure.compareAndSet(null, "Renamed object has been found " + found + " times in snapshot "
+                            + snapshot.getVersion());
+                }
+            }
+        }
+        stop.set(true);
+        renaming.join();
+        Assert.assertNull(failure.get(), failure.get());
+    }
+
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming.internal.context;
+
+import java.util.Hashtable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks the cache of the names that have not been found.
+ * @author Florent Benoit
+ */
+public class MissingNamesTest {
+
+    /**
+     * @return a context remembering the missing names
+     */
+    private static ContextImpl newContext() {
+        Hashtable<Object, Object> env = new Hashtable<Object, Object>();
+        env.put(ContextImpl.CACHE_MISSES, "true");
+        return new ContextImpl("test", env);
+    }
+
+    /**
+     * A name remembered as missing is found once it is bound.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testMissingNameBound() throws Exception {
+        ContextImpl context = newContext();
+        context.createSubcontext("a");
+        for (String name : new String[] {"x", "a/x"}) {
+            try {
+                context.lookup(name);
+                Assert.fail("Name '" + name + "' has been found");
+            } catch (NameNotFoundException e) {
+                // expected
+            }
+            context.bind(name, "value");
+            Assert.assertEquals(context.lookup(name), "value");
+        }
+    }
+
+    /**
+     * The environment returned by a context is a copy: changing it doesn't
+     * change the context nor its subcontexts.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testEnvironmentNotShared() throws Exception {
+        ContextImpl context = newContext();
+        ContextImpl subcontext = (ContextImpl) context.createSubcontext("a");
+        context.getEnvironment().clear();
+        subcontext.getEnvironment().remove(ContextImpl.CACHE_MISSES);
+        Assert.assertEquals(context.getEnvironment().get(ContextImpl.CACHE_MISSES), "true");
+        Assert.assertEquals(subcontext.getEnvironment().get(ContextImpl.CACHE_MISSES), "true");
+        subcontext.removeFromEnvironment(ContextImpl.CACHE_MISSES);
+        Assert.assertNull(subcontext.getEnvironment().get(ContextImpl.CACHE_MISSES));
+        Assert.assertEquals(context.getEnvironment().get(ContextImpl.CACHE_MISSES), "true");
+    }
+
+    /**
+     * A name bound while a lookup is missing it is found once the bind has
+     * returned: the miss is not remembered for the new bindings.
+     * @throws Exception if the test fails
+     */
+    @Test(timeOut = 60000)
+    public void testBindDuringMissingLookup() throws Exception {
+        Hashtable<Object, Object> env = new Hashtable<Object, Object>();
+        env.put(ContextImpl.CACHE_MISSES, "true");
+        final CountDownLatch missed = new CountDownLatch(1);
+        final CountDownLatch bound = new CountDownLatch(1);
+        final ContextImpl context = new ContextImpl("test", env) {
+            @Override
+            protected Object getBinding(final String name, final long version) {
+                Object obj = super.getBinding(name, version);
+                if (obj == null && missed.getCount() > 0) {
+                    // let the name be bound before the miss is reported
+                    missed.countDown();
+                    try {
+                        bound.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return obj;
+            }
+        };
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        Thread lookingUp = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    context.lookup("x");
+                } catch (NameNotFoundException e) {
+                    // missed before the bind
+                } catch (NamingException e) {
+                    failure.set(e);
+                }
+            }
+        };
+        lookingUp.start();
+        missed.await();
+        context.bind("x", "value");
+        bound.countDown();
+        lookingUp.join();
+        Assert.assertNull(failure.get());
+        Assert.assertEquals(context.lookup("x"), "value");
+    }
+
+}
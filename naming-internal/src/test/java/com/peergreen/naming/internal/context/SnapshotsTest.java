@@ -0,0 +1,275 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming.internal.context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.peergreen.naming.NamingSnapshot;
+
+/**
+ * Checks the lookups done under a pinned snapshot, alone and while other
+ * threads are updating the contexts or pinning and releasing snapshots.
+ * @author Florent Benoit
+ */
+public class SnapshotsTest {
+
+    /**
+     * Duration of the concurrent tests, in milliseconds.
+     */
+    private static final long DURATION = 1000L;
+
+    /**
+     * A pinned snapshot doesn't see the changes done after it, until it is
+     * closed.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testSnapshotIsolation() throws Exception {
+        ContextImpl context = new ContextImpl("test");
+        context.bind("y", "y1");
+        context.bind("removed", "r1");
+        NamingSnapshot snapshot = ContextImpl.pinSnapshot();
+        try {
+            context.rebind("y", "y2");
+            context.unbind("removed");
+            context.bind("added", "a1");
+            Assert.assertEquals(context.lookup("y"), "y1");
+            Assert.assertEquals(context.lookup("removed"), "r1");
+            try {
+                context.lookup("added");
+                Assert.fail("Name bound after the snapshot has been found");
+            } catch (NameNotFoundException e) {
+                // expected
+            }
+        } finally {
+            snapshot.close();
+        }
+        Assert.assertEquals(context.lookup("y"), "y2");
+        Assert.assertEquals(context.lookup("added"), "a1");
+    }
+
+    /**
+     * A snapshot is pinned while an update is being applied, and the
+     * lookups of the other contexts don't wait for it.
+     * @throws Exception if the test fails
+     */
+    @Test(timeOut = 60000)
+    public void testPinDuringUpdate() throws Exception {
+        ContextImpl updated = new ContextImpl("updated");
+        ContextImpl other = new ContextImpl("other");
+        other.bind("x", "value");
+        long version = Snapshots.beginUpdate(updated);
+        try {
+            NamingSnapshot snapshot = ContextImpl.pinSnapshot();
+            try {
+                Assert.assertEquals(other.lookup("x"), "value");
+            } finally {
+                snapshot.close();
+            }
+        } finally {
+            Snapshots.endUpdate(updated, version);
+        }
+    }
+
+    /**
+     * The previous objects kept for a released snapshot are dropped by the
+     * next update of their context.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testHistoryPrunedByNextUpdate() throws Exception {
+        ContextImpl context = new ContextImpl("test");
+        context.bind("x", "x1");
+        NamingSnapshot snapshot = ContextImpl.pinSnapshot();
+        try {
+            context.rebind("x", "x2");
+            Assert.assertTrue(context.hasHistory());
+        } finally {
+            snapshot.close();
+        }
+        context.bind("y", "y1");
+        Assert.assertFalse(context.hasHistory());
+        Assert.assertEquals(context.lookup("x"), "x2");
+    }
+
+    /**
+     * Nested snapshots each see their own version, and closing the inner
+     * one restores the outer one.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testNestedSnapshots() throws Exception {
+        ContextImpl context = new ContextImpl("test");
+        context.bind("y", "y1");
+        try (NamingSnapshot outer = ContextImpl.pinSnapshot()) {
+            context.rebind("y", "y2");
+            try (NamingSnapshot inner = ContextImpl.pinSnapshot()) {
+                context.rebind("y", "y3");
+                Assert.assertTrue(inner.getVersion() > outer.getVersion());
+                Assert.assertEquals(context.lookup("y"), "y2");
+            }
+            Assert.assertEquals(context.lookup("y"), "y1");
+        }
+        Assert.assertEquals(context.lookup("y"), "y3");
+    }
+
+    /**
+     * A snapshot sees a rename between two contexts either before or after
+     * it, never half done.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testRenameAcrossContexts() throws Exception {
+        ContextImpl context = new ContextImpl("test");
+        context.createSubcontext("a");
+        context.createSubcontext("b");
+        context.bind("a/x", "x1");
+        NamingSnapshot snapshot = ContextImpl.pinSnapshot();
+        try {
+            context.rename("a/x", "b/x");
+            Assert.assertEquals(context.lookup("a/x"), "x1");
+            try {
+                context.lookup("b/x");
+                Assert.fail("Name renamed after the snapshot has been found");
+            } catch (NameNotFoundException e) {
+                // expected
+            }
+        } finally {
+            snapshot.close();
+        }
+        Assert.assertEquals(context.lookup("b/x"), "x1");
+    }
+
+    /**
+     * The lookups done under a snapshot always return the same object while
+     * other threads keep rebinding it, and pinning and releasing snapshots
+     * (the releases prune the previous objects).
+     * @throws Exception if the test fails
+     */
+    @Test(timeOut = 60000)
+    public void testRepeatableReadsUnderConcurrentUpdates() throws Exception {
+        final ContextImpl context = new ContextImpl("test");
+        context.bind("y", Integer.valueOf(0));
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 2; i++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    int value = 0;
+                    try {
+                        while (!stop.get()) {
+                            context.rebind("y", Integer.valueOf(++value));
+                        }
+                    } catch (NamingException e) {
+                        failure.compareAndSet(null, "Rebind has failed: " + e);
+                    }
+                }
+            });
+        }
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (!stop.get()) {
+                            try (NamingSnapshot snapshot = ContextImpl.pinSnapshot()) {
+                                Object first = context.lookup("y");
+                                for (int j = 0; j < 20; j++) {
+                                    Object next = context.lookup("y");
+                                    if (!first.equals(next)) {
+                                        failure.compareAndSet(null, "Snapshot " + snapshot.getVersion()
+                                                + " has seen " + first + " then " + next);
+                                    }
+                                }
+                            }
+                        }
+                    } catch (NamingException e) {
+                        failure.compareAndSet(null, "Lookup has failed: " + e);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(DURATION);
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertNull(failure.get(), failure.get());
+    }
+
+    /**
+     * A rename within a small context is a single update: a snapshot finds
+     * the object with exactly one of the names.
+     * @throws Exception if the test fails
+     */
+    @Test(timeOut = 60000)
+    public void testAtomicRenameUnderSnapshot() throws Exception {
+        final ContextImpl context = new ContextImpl("test");
+        context.bind("a", "value");
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        Thread renaming = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (!stop.get()) {
+                        context.rename("a", "b");
+                        context.rename("b", "a");
+                    }
+                } catch (NamingException e) {
+                    failure.compareAndSet(null, "Rename has failed: " + e);
+                }
+            }
+        };
+        renaming.start();
+        long end = System.currentTimeMillis() + DURATION;
+        while (System.currentTimeMillis() < end && failure.get() == null) {
+            try (NamingSnapshot snapshot = ContextImpl.pinSnapshot()) {
+                int found = 0;
+                for (String name : new String[] {"a", "b"}) {
+                    try {
+                        context.lookup(name);
+                        found++;
+                    } catch (NameNotFoundException e) {
+                        // renamed
+                    }
+                }
+                if (found != 1) {
+                    failure.compareAndSet(null, "Snapshot " + snapshot.getVersion() + " has found " + found
+                            + " names");
+                }
+            }
+        }
+        stop.set(true);
+        renaming.join();
+        Assert.assertNull(failure.get(), failure.get());
+    }
+
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright 2013 Peergreen S.A.S.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.peergreen.naming.internal.context;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks the eviction of the objects cached for a wrapped context.
+ * @author Florent Benoit
+ */
+public class WrappedContextCacheTest {
+
+    /**
+     * Maximum number of entries of the tested cache.
+     */
+    private static final int MAX_SIZE = 64;
+
+    /**
+     * The entries that are no longer used are all evicted by the new ones,
+     * wherever they are in the cache.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testUnusedEntriesEvicted() throws Exception {
+        WrappedContextCache cache = new WrappedContextCache(MAX_SIZE, 1L, TimeUnit.HOURS);
+        for (int i = 0; i < MAX_SIZE; i++) {
+            cache.put("unused" + i, Integer.valueOf(i));
+        }
+        // used after the unused ones
+        Thread.sleep(5L);
+        for (int i = 0; i < MAX_SIZE * 4; i++) {
+            cache.put("used" + i, Integer.valueOf(i));
+        }
+        for (int i = 0; i < MAX_SIZE; i++) {
+            Assert.assertNull(cache.get("unused" + i), "Entry 'unused" + i + "' has never been evicted");
+        }
+    }
+
+}